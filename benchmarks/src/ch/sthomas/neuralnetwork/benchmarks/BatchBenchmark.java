@@ -0,0 +1,53 @@
+package ch.sthomas.neuralnetwork.benchmarks;
+
+import ch.sthomas.neuralnetwork.Network;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The forward pass for a batch of inputs, as one matrix-matrix product per layer and as one pass per input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    @Param({"64", "512", "2048"})
+    public int width;
+
+    @Param({"1", "16", "64", "256"})
+    public int batch;
+
+    private Network network;
+    private double[] inputs;
+    private double[] outputs;
+    private double[] single;
+
+    @Setup
+    public void setup() {
+        this.network = Networks.create(this.width, 1);
+        this.inputs = Networks.inputs(this.batch * this.width, 1);
+        this.outputs = new double[this.batch * this.width];
+        this.single = new double[this.width];
+    }
+
+    @Benchmark
+    public double[] batched() {
+        this.network.calculateOutputs(this.inputs, this.batch, this.outputs);
+        return this.outputs;
+    }
+
+    @Benchmark
+    public double[] oneByOne() {
+        double[] input = new double[this.width];
+        for (int s = 0; s < this.batch; s++) {
+            System.arraycopy(this.inputs, s * this.width, input, 0, this.width);
+            this.network.calculateOutputs(input, this.single);
+            System.arraycopy(this.single, 0, this.outputs, s * this.width, this.width);
+        }
+        return this.outputs;
+    }
+}
@@ -0,0 +1,50 @@
+package ch.sthomas.neuralnetwork.benchmarks;
+
+import ch.sthomas.neuralnetwork.Network;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The forward pass for a single input. {@link #calculateOutputsIntoBuffer()} should allocate 0 bytes per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ForwardBenchmark {
+    @Param({"64", "512", "2048"})
+    public int width;
+
+    @Param({"1", "3"})
+    public int depth;
+
+    private Network network;
+    private double[] inputs;
+    private double[] outputs;
+
+    @Setup
+    public void setup() {
+        this.network = Networks.create(this.width, this.depth);
+        this.inputs = Networks.inputs(this.width, 1);
+        this.outputs = new double[this.width];
+    }
+
+    @Benchmark
+    public double[] calculateOutputs() {
+        return this.network.calculateOutputs(this.inputs);
+    }
+
+    @Benchmark
+    public double[] calculateOutputsIntoBuffer() {
+        this.network.calculateOutputs(this.inputs, this.outputs);
+        return this.outputs;
+    }
+
+    @Benchmark
+    public double[][] calculateAllNeuronActivations() {
+        return this.network.calculateAllNeuronActivations(this.inputs);
+    }
+}
@@ -0,0 +1,77 @@
+package ch.sthomas.neuralnetwork.benchmarks;
+
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A layer stored as one contiguous weights matrix compared with a layer stored as separate Neurons that each own
+ * their weights, the layout networks used before {@link Layer}. {@link ch.sthomas.neuralnetwork.Neuron} is now a view
+ * on a layer itself, so the old layout is reproduced by {@link SeparateNeuron}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class LayoutBenchmark {
+    @Param({"64", "512", "4096"})
+    public int width;
+
+    private Layer layer;
+    private SeparateNeuron[] neurons;
+    private double[] inputs;
+    private double[] outputs;
+
+    @Setup
+    public void setup() {
+        Network network = Networks.create(this.width, 0);
+        this.layer = network.getLayers()[0];
+        this.neurons = new SeparateNeuron[this.width];
+        for (int j = 0; j < this.width; j++) {
+            this.neurons[j] = new SeparateNeuron(this.layer.getNeuron(j).getWeights(), this.layer.getBiases()[j]);
+        }
+        this.inputs = Networks.inputs(this.width, 1);
+        this.outputs = new double[this.width];
+    }
+
+    @Benchmark
+    public double[] contiguousMatrix() {
+        this.layer.forward(this.inputs, this.outputs);
+        return this.outputs;
+    }
+
+    @Benchmark
+    public double[] neuronObjects() {
+        for (int j = 0; j < this.neurons.length; j++) {
+            this.outputs[j] = this.neurons[j].activate(this.inputs);
+        }
+        return this.outputs;
+    }
+
+    /**
+     * A Neuron as networks stored it before {@link Layer}: its own weights array, here a copy of its row, and a scalar
+     * loop for z, followed by the sigmoid function the layer uses as well.
+     */
+    private static final class SeparateNeuron {
+        private final double[] weights;
+        private final double bias;
+
+        private SeparateNeuron(double[] weights, double bias) {
+            this.weights = weights;
+            this.bias = bias;
+        }
+
+        private double activate(double[] inputs) {
+            double sum = 0.0;
+            for (int i = 0; i < this.weights.length; i++) {
+                sum += this.weights[i] * inputs[i];
+            }
+            sum += this.bias;
+            return 1 / (1 + Math.exp(-sum));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ch.sthomas.neuralnetwork.benchmarks;
+
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.WeightInitializer;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Creates the networks and inputs the benchmarks run on, always from the same seed.
+ */
+final class Networks {
+    private Networks() {
+    }
+
+    /**
+     * @param width  the number of inputs and Neurons of every layer
+     * @param hidden the number of hidden layers
+     * @return a network with small random weights
+     */
+    static Network create(int width, int hidden) {
+        int[] hiddenLayers = new int[hidden];
+        Arrays.fill(hiddenLayers, width);
+        Network network = new Network(width, width, hiddenLayers, width);
+        WeightInitializer.XAVIER_UNIFORM.initialize(network, new SplittableRandom(42));
+        return network;
+    }
+
+    /**
+     * @return random values in [0, 1)
+     */
+    static double[] inputs(int length, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] inputs = new double[length];
+        for (int i = 0; i < length; i++) inputs[i] = random.nextDouble();
+        return inputs;
+    }
+}
@@ -0,0 +1,36 @@
+package ch.sthomas.neuralnetwork.benchmarks;
+
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.Neuron;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The dot product of a single Neuron, {@link Neuron#z(double[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class NeuronBenchmark {
+    @Param({"64", "512", "4096"})
+    public int width;
+
+    private Neuron neuron;
+    private double[] inputs;
+
+    @Setup
+    public void setup() {
+        Network network = Networks.create(this.width, 0);
+        this.neuron = network.getNeuron(0, 0);
+        this.inputs = Networks.inputs(this.width, 1);
+    }
+
+    @Benchmark
+    public double z() {
+        return this.neuron.z(this.inputs);
+    }
+}
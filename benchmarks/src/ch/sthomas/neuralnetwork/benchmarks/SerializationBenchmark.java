@@ -0,0 +1,82 @@
+package ch.sthomas.neuralnetwork.benchmarks;
+
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.io.MappedModel;
+import ch.sthomas.neuralnetwork.io.ModelFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Saving and loading a network with Java serialization and with the binary {@link ModelFile} format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    @Param({"64", "512", "2048"})
+    public int width;
+
+    private Network network;
+    private Path directory;
+    /**
+     * The filename for {@link Network#saveToDisk(String)}, relative to the working directory
+     */
+    private String serializedName;
+    private Path serializedFile;
+    private Path modelFile;
+
+    @Setup
+    public void setup() throws IOException {
+        this.network = Networks.create(this.width, 1);
+        Path workingDirectory = Path.of(System.getProperty("user.dir"));
+        this.directory = Files.createTempDirectory(workingDirectory, "serialization-benchmark");
+        this.serializedName = "/" + workingDirectory.relativize(this.directory) + "/network";
+        this.serializedFile = this.directory.resolve("network.network");
+        this.modelFile = this.directory.resolve("network.nnm");
+        this.network.saveToDisk(this.serializedName);
+        ModelFile.write(this.network, this.modelFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public Network saveToDisk() throws IOException {
+        this.network.saveToDisk(this.serializedName);
+        return this.network;
+    }
+
+    @Benchmark
+    public Network readFromDisk() throws IOException, ClassNotFoundException {
+        return Network.readFromDisk(this.serializedFile);
+    }
+
+    @Benchmark
+    public Network writeModelFile() throws IOException {
+        ModelFile.write(this.network, this.modelFile);
+        return this.network;
+    }
+
+    @Benchmark
+    public Network readModelFile() throws IOException {
+        return ModelFile.read(this.modelFile);
+    }
+
+    @Benchmark
+    public MappedModel mapModelFile() throws IOException {
+        return ModelFile.map(this.modelFile);
+    }
+}
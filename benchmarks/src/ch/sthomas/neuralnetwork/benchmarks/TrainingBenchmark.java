@@ -0,0 +1,52 @@
+package ch.sthomas.neuralnetwork.benchmarks;
+
+import ch.sthomas.neuralnetwork.Backpropagation;
+import ch.sthomas.neuralnetwork.Network;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One training step on a batch with {@link Network#backPropagationTrain(double[][], double[][])}, and the forward and
+ * backward pass of a single sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class TrainingBenchmark {
+    @Param({"64", "512"})
+    public int width;
+
+    @Param({"1", "3"})
+    public int depth;
+
+    @Param({"1", "32", "256"})
+    public int batch;
+
+    private Network network;
+    private double[][] inputs;
+    private Backpropagation backpropagation;
+
+    @Setup
+    public void setup() {
+        this.network = Networks.create(this.width, this.depth);
+        this.inputs = new double[this.batch][];
+        for (int i = 0; i < this.batch; i++) this.inputs[i] = Networks.inputs(this.width, i);
+        this.backpropagation = new Backpropagation(this.network);
+    }
+
+    @Benchmark
+    public Network backPropagationTrain() {
+        this.network.backPropagationTrain(this.inputs, this.inputs);
+        return this.network;
+    }
+
+    @Benchmark
+    public double accumulateSample() {
+        this.backpropagation.clear();
+        return this.backpropagation.accumulate(this.inputs[0], this.inputs[0]);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH benchmarks of the network's forward pass, training step, serialization and memory layout.
+ */
+package ch.sthomas.neuralnetwork.benchmarks;
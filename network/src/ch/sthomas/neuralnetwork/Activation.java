@@ -0,0 +1,32 @@
+package ch.sthomas.neuralnetwork;
+
+import java.io.Serializable;
+
+/**
+ * An activation function applied to the values of z = w * x + b of a whole layer at once.
+ *
+ * @see ActivationType
+ */
+public interface Activation extends Serializable {
+    /**
+     * Calculate the activations a = f(z). {@code z} and {@code a} may be the same array.
+     *
+     * @param z      the values of z
+     * @param a      the array to write the activations to
+     * @param offset the index of the first value in both arrays
+     * @param length the number of values, the number of Neurons in the layer
+     */
+    void forward(double[] z, double[] a, int offset, int length);
+
+    /**
+     * Calculate dC/dz from dC/da, the chain rule through the activation function.
+     *
+     * @param z        the values of z
+     * @param a        the activations calculated by {@link #forward} for z
+     * @param gradient the values of dC/da
+     * @param delta    the array to write dC/dz to
+     * @param offset   the index of the first value in all arrays
+     * @param length   the number of values, the number of Neurons in the layer
+     */
+    void backward(double[] z, double[] a, double[] gradient, double[] delta, int offset, int length);
+}
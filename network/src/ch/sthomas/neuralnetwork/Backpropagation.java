@@ -0,0 +1,171 @@
+package ch.sthomas.neuralnetwork;
+
+/**
+ * Calculates the cost gradients of a {@link Network} with backpropagation. The values of z and the activations of
+ * every layer are kept during the forward pass, so the error is propagated once from the output layer back to the
+ * input layer. An instance owns its buffers and must only be used by one thread at a time.
+ */
+public class Backpropagation {
+    private final Network network;
+    private final Gradients gradients;
+
+    /**
+     * The values of z = w * x + b of every layer during the last forward pass, [Layer][Neuron]
+     */
+    private final double[][] z;
+    /**
+     * The activations of every layer during the last forward pass, [Layer][Neuron]
+     */
+    private final double[][] a;
+    /**
+     * Two buffers of the width of the widest layer for dC/dz of the current layer and dC/da of the previous one
+     */
+    private final double[] delta;
+    private final double[] previousGradient;
+
+    /**
+     * Whether the time spent in the forward and backward passes is measured, and the measured times since the last
+     * {@link #clear()}
+     */
+    private boolean timed;
+    private long forwardNanos;
+    private long backwardNanos;
+
+    /**
+     * Create a new Backpropagation for the given network.
+     *
+     * @param network the network to calculate the gradients for
+     */
+    public Backpropagation(Network network) {
+        this.network = network;
+        this.gradients = new Gradients(network);
+
+        Layer[] layers = network.getLayers();
+        this.z = new double[layers.length][];
+        this.a = new double[layers.length][];
+        int width = 0;
+        for (int i = 0; i < layers.length; i++) {
+            this.z[i] = new double[layers[i].getOutputs()];
+            this.a[i] = new double[layers[i].getOutputs()];
+            width = Math.max(width, layers[i].getOutputs());
+        }
+        this.delta = new double[width];
+        this.previousGradient = new double[width];
+    }
+
+    /**
+     * @return the gradients summed over all samples since the last {@link #clear()}
+     */
+    public Gradients getGradients() {
+        return this.gradients;
+    }
+
+    /**
+     * Set whether the time spent in the forward and backward passes is measured. Off by default, so no clock is read.
+     *
+     * @param timed true to measure the time of every pass
+     * @see #getForwardNanos()
+     * @see #getBackwardNanos()
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * @return the nanoseconds spent in forward passes since the last {@link #clear()}, 0 if not timed
+     */
+    public long getForwardNanos() {
+        return this.forwardNanos;
+    }
+
+    /**
+     * @return the nanoseconds spent in backward passes since the last {@link #clear()}, 0 if not timed
+     */
+    public long getBackwardNanos() {
+        return this.backwardNanos;
+    }
+
+    /**
+     * Reset the summed gradients and the measured times.
+     */
+    public void clear() {
+        this.gradients.clear();
+        this.forwardNanos = 0;
+        this.backwardNanos = 0;
+    }
+
+    /**
+     * Run one forward and one backward pass for a sample and add its cost gradients to {@link #getGradients()}.
+     *
+     * @param input    the input of the sample
+     * @param expected the expected output of the sample
+     * @return the cost of the sample before the gradients were added
+     * @see Network#getCostValue(double[], double[])
+     */
+    public double accumulate(double[] input, double[] expected) {
+        return this.accumulate(input, null, expected);
+    }
+
+    /**
+     * Run one forward and one backward pass for a sample with sparse inputs and add its cost gradients to
+     * {@link #getGradients()}. The first layer only reads and updates the weights of the inputs that are not 0.
+     *
+     * @param input    the sparse input of the sample
+     * @param expected the expected output of the sample
+     * @return the cost of the sample
+     */
+    public double accumulate(SparseVector input, double[] expected) {
+        return this.accumulate(null, input, expected);
+    }
+
+    private double accumulate(double[] input, SparseVector sparseInput, double[] expected) {
+        Layer[] layers = this.network.getLayers();
+        int last = layers.length - 1;
+        if (expected.length != layers[last].getOutputs())
+            throw new IllegalArgumentException("Expected output must be of the length of the output layer.");
+
+        long start = this.timed ? System.nanoTime() : 0;
+
+        // Forward pass, keeping z and a of every layer
+        double[] x = input;
+        for (int i = 0; i <= last; i++) {
+            if (i == 0 && sparseInput != null) layers[0].forward(sparseInput, this.z[0], this.a[0]);
+            else layers[i].forward(x, this.z[i], this.a[i]);
+            x = this.a[i];
+        }
+        long forwardEnd = this.timed ? System.nanoTime() : 0;
+
+        // dC/da = 2 * (a^L - expected) for the output layer, then dC/dz through the activation function
+        double cost = 0.0;
+        double[] output = this.a[last];
+        for (int j = 0; j < output.length; j++) {
+            double difference = output[j] - expected[j];
+            cost += difference * difference;
+            this.previousGradient[j] = 2 * difference;
+        }
+        layers[last].getActivation().backward(this.z[last], output, this.previousGradient, this.delta, 0, output.length);
+
+        // Backward pass, propagating dC/dz once from the output layer to the input layer
+        for (int i = last; i >= 0; i--) {
+            if (i == 0 && sparseInput != null) {
+                layers[0].backward(sparseInput, this.delta, this.gradients.getWeights(0),
+                        this.gradients.getBiases(0));
+                break;
+            }
+            double[] previousActivations = i > 0 ? this.a[i - 1] : input;
+            double[] propagated = i > 0 ? this.previousGradient : null;
+            layers[i].backward(previousActivations, this.delta, this.gradients.getWeights(i), this.gradients.getBiases(i), propagated);
+            if (i > 0) {
+                layers[i - 1].getActivation().backward(this.z[i - 1], previousActivations, this.previousGradient, this.delta, 0, previousActivations.length);
+            }
+        }
+        this.gradients.addSample();
+
+        if (this.timed) {
+            long end = System.nanoTime();
+            this.forwardNanos += forwardEnd - start;
+            this.backwardNanos += end - forwardEnd;
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,122 @@
+package ch.sthomas.neuralnetwork;
+
+import java.util.Arrays;
+
+/**
+ * The summed cost gradients dC/dw and dC/db of every layer of a {@link Network} over a number of samples. The arrays
+ * have the same shape as the {@link Layer}'s weights and biases.
+ */
+public class Gradients {
+    private final double[][] weights;
+    private final double[][] biases;
+    private int samples;
+
+    /**
+     * Create new Gradients, all set to 0, for the layers of the given network.
+     *
+     * @param network the network to create the gradients for
+     */
+    public Gradients(Network network) {
+        Layer[] layers = network.getLayers();
+        this.weights = new double[layers.length][];
+        this.biases = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            this.weights[i] = new double[layers[i].getWeights().length];
+            this.biases[i] = new double[layers[i].getBiases().length];
+        }
+    }
+
+    /**
+     * @return the number of layers
+     */
+    public int getLayers() {
+        return this.weights.length;
+    }
+
+    /**
+     * @param layer the index of the layer
+     * @return the summed gradient of the layer's weights, in the same row-major order as {@link Layer#getWeights()}
+     */
+    public double[] getWeights(int layer) {
+        return this.weights[layer];
+    }
+
+    /**
+     * @param layer the index of the layer
+     * @return the summed gradient of the layer's biases
+     */
+    public double[] getBiases(int layer) {
+        return this.biases[layer];
+    }
+
+    /**
+     * @return the number of samples the gradients were summed over
+     */
+    public int getSamples() {
+        return this.samples;
+    }
+
+    /**
+     * Count one more sample the gradients were summed over.
+     */
+    void addSample() {
+        this.samples++;
+    }
+
+    /**
+     * Add the gradients and samples of {@code other} to these gradients.
+     *
+     * @param other the gradients to add, must belong to a network of the same shape
+     */
+    public void add(Gradients other) {
+        this.add(other, 0, 1);
+    }
+
+    /**
+     * Add one slice of the gradients of {@code other} to these gradients. Every layer's arrays are split into
+     * {@code parts} contiguous slices, so the slices can be added by different threads at the same time. The samples
+     * of {@code other} are added with part 0, so adding all parts adds them once.
+     *
+     * @param other the gradients to add, must belong to a network of the same shape
+     * @param part  the index of the slice to add, from 0 to parts - 1
+     * @param parts the number of slices
+     */
+    public void add(Gradients other, int part, int parts) {
+        if (this.weights.length != other.weights.length)
+            throw new IllegalArgumentException("Gradients can only be added for networks of the same shape.");
+        for (int i = 0; i < this.weights.length; i++) {
+            addSlice(this.weights[i], other.weights[i], part, parts);
+            addSlice(this.biases[i], other.biases[i], part, parts);
+        }
+        if (part == 0) this.samples += other.samples;
+    }
+
+    private static void addSlice(double[] target, double[] values, int part, int parts) {
+        int from = (int) ((long) target.length * part / parts);
+        int to = (int) ((long) target.length * (part + 1) / parts);
+        for (int j = from; j < to; j++) target[j] += values[j];
+    }
+
+    /**
+     * @return the euclidean norm of all summed gradients of all layers
+     */
+    public double getNorm() {
+        double sum = 0.0;
+        for (int i = 0; i < this.weights.length; i++) {
+            for (double value : this.weights[i]) sum += value * value;
+            for (double value : this.biases[i]) sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Reset all gradients and the number of samples to 0.
+     */
+    public void clear() {
+        for (int i = 0; i < this.weights.length; i++) {
+            Arrays.fill(this.weights[i], 0.0);
+            Arrays.fill(this.biases[i], 0.0);
+        }
+        this.samples = 0;
+    }
+}
@@ -0,0 +1,275 @@
+package ch.sthomas.neuralnetwork;
+
+import ch.sthomas.neuralnetwork.kernel.Kernels;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A fully connected layer of Neurons. The weights of all the Neurons in the layer are stored in one contiguous
+ * row-major matrix, so row {@code j} holds the weights of the incoming edges of Neuron {@code j}. The biases are stored
+ * in a separate vector. All Neurons of a layer share one {@link Activation}.
+ */
+public class Layer implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final int inputs;
+    private final int outputs;
+
+    /**
+     * The weights matrix with {@code outputs} rows and {@code inputs} columns, weights[j * inputs + i] is the weight of
+     * the edge from input i to Neuron j.
+     */
+    private final double[] weights;
+    private final double[] biases;
+    private Activation activation;
+
+    /**
+     * Create a new Layer with all weights and biases set to 0 and the activation function
+     * {@link Network#ACTIVATION_TYPE}.
+     *
+     * @param inputs  the number of inputs (incoming edges) of every Neuron
+     * @param outputs the number of Neurons in the layer
+     */
+    public Layer(int inputs, int outputs) {
+        this(inputs, outputs, Network.ACTIVATION_TYPE);
+    }
+
+    /**
+     * Create a new Layer with all weights and biases set to 0.
+     *
+     * @param inputs     the number of inputs (incoming edges) of every Neuron
+     * @param outputs    the number of Neurons in the layer
+     * @param activation the activation function of the Neurons
+     */
+    public Layer(int inputs, int outputs, Activation activation) {
+        this(inputs, outputs, new double[inputs * outputs], new double[outputs], activation);
+    }
+
+    /**
+     * Create a new Layer backed by the given arrays with the activation function {@link Network#ACTIVATION_TYPE}.
+     * The arrays are not copied.
+     *
+     * @param inputs  the number of inputs (incoming edges) of every Neuron
+     * @param outputs the number of Neurons in the layer
+     * @param weights the row-major weights matrix of length {@code inputs * outputs}
+     * @param biases  the biases of length {@code outputs}
+     */
+    public Layer(int inputs, int outputs, double[] weights, double[] biases) {
+        this(inputs, outputs, weights, biases, Network.ACTIVATION_TYPE);
+    }
+
+    /**
+     * Create a new Layer backed by the given arrays. The arrays are not copied.
+     *
+     * @param inputs     the number of inputs (incoming edges) of every Neuron
+     * @param outputs    the number of Neurons in the layer
+     * @param weights    the row-major weights matrix of length {@code inputs * outputs}
+     * @param biases     the biases of length {@code outputs}
+     * @param activation the activation function of the Neurons
+     */
+    public Layer(int inputs, int outputs, double[] weights, double[] biases, Activation activation) {
+        if (weights.length != inputs * outputs || biases.length != outputs)
+            throw new IllegalArgumentException("Weights must be of length inputs * outputs and biases of length outputs.");
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.weights = weights;
+        this.biases = biases;
+        this.activation = activation;
+    }
+
+    /**
+     * @return the number of inputs (incoming edges) of every Neuron
+     */
+    public int getInputs() {
+        return this.inputs;
+    }
+
+    /**
+     * @return the number of Neurons in this layer
+     */
+    public int getOutputs() {
+        return this.outputs;
+    }
+
+    /**
+     * Returns the backing row-major weights matrix, changes to the array change the layer.
+     *
+     * @return the weights of this layer
+     */
+    public double[] getWeights() {
+        return this.weights;
+    }
+
+    /**
+     * Returns the backing biases vector, changes to the array change the layer.
+     *
+     * @return the biases of this layer
+     */
+    public double[] getBiases() {
+        return this.biases;
+    }
+
+    /**
+     * @return the activation function of the Neurons
+     */
+    public Activation getActivation() {
+        return this.activation;
+    }
+
+    /**
+     * Returns a view on a single Neuron of this layer. Changes to the Neuron are written to this layer.
+     *
+     * @param index the index of the Neuron in this layer
+     * @return the Neuron at the given index
+     */
+    public Neuron getNeuron(int index) {
+        if (index < 0 || index >= this.outputs)
+            throw new IndexOutOfBoundsException("Neuron " + index + " does not exist in a layer of " + this.outputs + " Neurons.");
+        return new Neuron(this, index);
+    }
+
+    /**
+     * Return the value of z = w_j * x + b_j for the Neuron j.
+     *
+     * @param neuron the index of the Neuron
+     * @param x      the inputs
+     * @return the value of z
+     */
+    public double z(int neuron, double[] x) {
+        return KERNELS.dot(this.weights, neuron * this.inputs, x, 0, this.inputs) + this.biases[neuron];
+    }
+
+    /**
+     * Calculate the activations of all Neurons in this layer.
+     *
+     * @param x      the inputs to this layer, at least of length {@link #getInputs()}
+     * @param result the array to write the activations to, at least of length {@link #getOutputs()}
+     */
+    public void forward(double[] x, double[] result) {
+        KERNELS.gemv(this.weights, this.outputs, this.inputs, x, this.biases, result);
+        this.activation.forward(result, result, 0, this.outputs);
+    }
+
+    /**
+     * Calculate the activations of all Neurons in this layer and keep the values of z for backpropagation.
+     *
+     * @param x the inputs to this layer, at least of length {@link #getInputs()}
+     * @param z the array to write the values of z = w * x + b to, at least of length {@link #getOutputs()}
+     * @param a the array to write the activations to, at least of length {@link #getOutputs()}
+     */
+    public void forward(double[] x, double[] z, double[] a) {
+        KERNELS.gemv(this.weights, this.outputs, this.inputs, x, this.biases, z);
+        this.activation.forward(z, a, 0, this.outputs);
+    }
+
+    /**
+     * Calculate the activations of all Neurons in this layer for sparse inputs, only reading the weights of the
+     * inputs that are not 0.
+     *
+     * @param x the inputs to this layer, of dimension {@link #getInputs()}
+     * @param z the array to write the values of z = w * x + b to, at least of length {@link #getOutputs()}
+     * @param a the array to write the activations to, at least of length {@link #getOutputs()}, may be {@code z}
+     */
+    public void forward(SparseVector x, double[] z, double[] a) {
+        if (x.getDimension() != this.inputs)
+            throw new IllegalArgumentException("Inputs must be of the dimension of the layer's inputs.");
+        int nonZeros = x.getNonZeros();
+        for (int j = 0, row = 0; j < this.outputs; j++, row += this.inputs) {
+            double sum = this.biases[j];
+            for (int k = 0; k < nonZeros; k++) sum += this.weights[row + x.getIndex(k)] * x.getValue(k);
+            z[j] = sum;
+        }
+        this.activation.forward(z, a, 0, this.outputs);
+    }
+
+    /**
+     * Calculate the activations of all Neurons in this layer for a batch of inputs. The weights matrix is multiplied
+     * with all inputs at once, so it is loaded from memory once per batch instead of once per input.
+     *
+     * @param x       the row-major matrix of inputs, one row of {@link #getInputs()} values per sample
+     * @param samples the number of samples in the batch
+     * @param result  the row-major matrix to write the activations to, one row of {@link #getOutputs()} values per
+     *                sample
+     */
+    public void forward(double[] x, int samples, double[] result) {
+        KERNELS.gemm(x, this.weights, result, samples, this.outputs, this.inputs);
+        for (int s = 0, row = 0; s < samples; s++, row += this.outputs) {
+            for (int j = 0; j < this.outputs; j++) {
+                result[row + j] += this.biases[j];
+            }
+            this.activation.forward(result, result, row, this.outputs);
+        }
+    }
+
+    /**
+     * Add the cost gradient of this layer's weights and biases for one sample and propagate the error to the inputs.
+     *
+     * @param x             the inputs this layer was activated with
+     * @param delta         dC/dz of every Neuron in this layer
+     * @param gradWeights   the array to add dC/dw to, of the same shape as the weights
+     * @param gradBiases    the array to add dC/db to, of the same shape as the biases
+     * @param inputGradient the array to write dC/dx to, at least of length {@link #getInputs()}, or null if the
+     *                      error does not need to be propagated further
+     */
+    public void backward(double[] x, double[] delta, double[] gradWeights, double[] gradBiases, double[] inputGradient) {
+        if (inputGradient != null) Arrays.fill(inputGradient, 0, this.inputs, 0.0);
+        for (int j = 0, row = 0; j < this.outputs; j++, row += this.inputs) {
+            double d = delta[j];
+            gradBiases[j] += d;
+            // dC/dw_ji = delta_j * x_i and dC/dx_i = sum over j of delta_j * w_ji
+            KERNELS.axpy(d, x, 0, gradWeights, row, this.inputs);
+            if (inputGradient != null) KERNELS.axpy(d, this.weights, row, inputGradient, 0, this.inputs);
+        }
+    }
+
+    /**
+     * Add the cost gradient of this layer's weights and biases for one sparse input. Only the weights of the inputs
+     * that are not 0 have a gradient, so only those are touched. The error is not propagated to the inputs.
+     *
+     * @param x           the sparse inputs this layer was activated with
+     * @param delta       dC/dz of every Neuron in this layer
+     * @param gradWeights the array to add dC/dw to, of the same shape as the weights
+     * @param gradBiases  the array to add dC/db to, of the same shape as the biases
+     */
+    public void backward(SparseVector x, double[] delta, double[] gradWeights, double[] gradBiases) {
+        int nonZeros = x.getNonZeros();
+        for (int j = 0, row = 0; j < this.outputs; j++, row += this.inputs) {
+            double d = delta[j];
+            gradBiases[j] += d;
+            for (int k = 0; k < nonZeros; k++) gradWeights[row + x.getIndex(k)] += d * x.getValue(k);
+        }
+    }
+
+    /**
+     * Calculate the activation of a single Neuron of this layer.
+     *
+     * @param neuron the index of the Neuron
+     * @param x      the inputs
+     * @return the activation value of the Neuron
+     */
+    public double activate(int neuron, double[] x) {
+        if (this.activation instanceof ActivationType type && type != ActivationType.SOFTMAX) {
+            return type.activate(this.z(neuron, x));
+        }
+        // The activation may depend on the other Neurons of the layer
+        double[] result = new double[this.outputs];
+        this.forward(x, result);
+        return result[neuron];
+    }
+
+    /**
+     * Read a Layer, Layers serialized before they had an activation function use {@link Network#ACTIVATION_TYPE}.
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (this.activation == null) this.activation = Network.ACTIVATION_TYPE;
+    }
+}
@@ -1,25 +1,40 @@
 package ch.sthomas.neuralnetwork;
 
+import ch.sthomas.neuralnetwork.kernel.Kernels;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
 public class MathUtils {
+    /**
+     * @return random values in [0, 1) from the generator of the current thread
+     */
     public static double[] getRandomDoubles(int length) {
+        return getRandomDoubles(length, ThreadLocalRandom.current());
+    }
+
+    /**
+     * @return random values in [0, 1) from the given generator
+     */
+    public static double[] getRandomDoubles(int length, RandomGenerator random) {
         double[] result = new double[length];
-        for (int i = 0; i < length; i++) result[i] = Math.random();
+        for (int i = 0; i < length; i++) result[i] = random.nextDouble();
         return result;
     }
 
     public static double[][] getRandomDoubleArrays(int length, int inner) {
+        return getRandomDoubleArrays(length, inner, ThreadLocalRandom.current());
+    }
+
+    public static double[][] getRandomDoubleArrays(int length, int inner, RandomGenerator random) {
         double[][] result = new double[length][];
-        for (int i = 0; i < length; i++) result[i] = getRandomDoubles(inner);
+        for (int i = 0; i < length; i++) result[i] = getRandomDoubles(inner, random);
         return result;
     }
 
     public static double dotP(double[] x, double[] y) {
         if (x.length != y.length)
             throw new IllegalArgumentException("Dot Product can only be calculated for vectors of the same length.");
-        double sum = 0.0;
-        for (int i = 0; i < x.length; i++) {
-            sum += x[i] + y[i];
-        }
-        return sum;
+        return Kernels.get().dot(x, 0, y, 0, x.length);
     }
 }
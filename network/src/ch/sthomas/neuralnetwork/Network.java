@@ -1,17 +1,38 @@
 package ch.sthomas.neuralnetwork;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class Network implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The activation function of layers created without one.
+     */
     public static final ActivationType ACTIVATION_TYPE = ActivationType.SIGMOID;
 
-    private final Neuron[][] neurons;
+    /**
+     * The layers of the network, the first one being the input layer and the last one the output layer.
+     */
+    private Layer[] layers;
+
+    private int nrOfInputs;
 
-    private final int nrOfInputs;
+    /**
+     * Per thread pair of ping-pong buffers for the activations of the layers between the input and the output, so
+     * {@link #calculateOutputs(double[], double[])} does not allocate. Grown to the largest batch a thread calculated
+     * with {@link #calculateOutputs(double[], int, double[])}. Created lazily, as it is not serialized.
+     */
+    private transient volatile ThreadLocal<double[][]> workspaces;
+
+    /**
+     * The buffers used by {@link #backPropagationTrain(double[][], double[][])}, created on first use.
+     */
+    private transient Backpropagation backpropagation;
 
     /**
      * Create a new Network.
@@ -22,68 +43,240 @@ public class Network implements Serializable {
      * @param outputs    the number of output Neurons for the network
      */
     public Network(int nrOfInputs, int inputs, int[] hidden, int outputs) {
+        this(nrOfInputs, inputs, hidden, outputs, ACTIVATION_TYPE, ACTIVATION_TYPE);
+    }
+
+    /**
+     * Create a new Network.
+     *
+     * @param nrOfInputs       the number of inputs for the network
+     * @param inputs           the number of input Neurons for the network
+     * @param hidden           the number of hidden Neurons for the network
+     * @param outputs          the number of output Neurons for the network
+     * @param hiddenActivation the activation function of the input and hidden Neurons
+     * @param outputActivation the activation function of the output Neurons
+     */
+    public Network(int nrOfInputs, int inputs, int[] hidden, int outputs, Activation hiddenActivation, Activation outputActivation) {
         this.nrOfInputs = nrOfInputs;
-        this.neurons = new Neuron[hidden.length + 2][];
+        this.layers = new Layer[hidden.length + 2];
 
         // Create input  neuron layers
-        this.neurons[0] = new Neuron[inputs];
+        this.layers[0] = new Layer(nrOfInputs, inputs, hiddenActivation);
         // Create hidden neuron layers
         for (int i = 0; i < hidden.length; i++) {
-            this.neurons[i + 1] = new Neuron[hidden[i]];
+            this.layers[i + 1] = new Layer(this.layers[i].getOutputs(), hidden[i], hiddenActivation);
         }
         // Create output neuron layers after input layer and hidden layers
-        this.neurons[hidden.length + 1] = new Neuron[outputs];
+        this.layers[hidden.length + 1] = new Layer(this.layers[hidden.length].getOutputs(), outputs, outputActivation);
 
         this.initInputs();
     }
 
-    public void initInputs() {
-        for (int i = 0; i < this.neurons.length; i++) {
-            for (int j = 0; j < this.neurons[i].length; j++) {
-                int nrOfWeights = i == 0 ? this.nrOfInputs : this.neurons[i - 1].length;
-                this.neurons[i][j] = new Neuron(MathUtils.getRandomDoubles(nrOfWeights), 0);
-            }
+    /**
+     * Create a new Network from existing layers. The layers are not copied.
+     *
+     * @param layers the layers, the first one being the input layer and the last one the output layer, every layer
+     *               must have as many inputs as the previous one has Neurons
+     */
+    public Network(Layer... layers) {
+        if (layers.length == 0) throw new IllegalArgumentException("A network needs at least one layer.");
+        for (int i = 1; i < layers.length; i++) {
+            if (layers[i].getInputs() != layers[i - 1].getOutputs())
+                throw new IllegalArgumentException("Layer " + i + " must have as many inputs as layer " + (i - 1) + " has Neurons.");
         }
+        this.nrOfInputs = layers[0].getInputs();
+        this.layers = layers;
+    }
+
+    /**
+     * Initialize the weights of every layer randomly with the scheme fitting its activation function and set the
+     * biases to 0. The generator is seeded randomly, use {@link #initInputs(long)} for reproducible weights.
+     *
+     * @see WeightInitializer#forActivation(Activation)
+     */
+    public void initInputs() {
+        WeightInitializer.initializeDefault(this, new SplittableRandom());
+    }
+
+    /**
+     * Initialize the weights of every layer randomly with the scheme fitting its activation function and set the
+     * biases to 0. The same seed always gives the same weights.
+     *
+     * @param seed the seed of the random generator
+     * @see WeightInitializer#forActivation(Activation)
+     */
+    public void initInputs(long seed) {
+        WeightInitializer.initializeDefault(this, new SplittableRandom(seed));
+    }
+
+    /**
+     * @return the number of inputs for the network
+     */
+    public int getNrOfInputs() {
+        return this.nrOfInputs;
+    }
+
+    /**
+     * Returns the layers of the network, the first one being the input layer and the last one the output layer.
+     * The layers are not copied, changes to them change the network.
+     *
+     * @return the layers of the network
+     */
+    public Layer[] getLayers() {
+        return this.layers;
+    }
+
+    /**
+     * Returns a view on a single Neuron of the network.
+     *
+     * @param layer the index of the layer
+     * @param index the index of the Neuron in the layer
+     * @return the Neuron
+     * @see Layer#getNeuron(int)
+     */
+    public Neuron getNeuron(int layer, int index) {
+        return this.layers[layer].getNeuron(index);
     }
 
     /**
      * Calculate the output values for the given inputs.
      *
      * @param inputs the inputs to the first layer
-     * @return an array of length neurons[neurons.length - 1].length containing all the values the output layer produced
+     * @return an array of length of the output layer containing all the values the output layer produced
      */
     public double[] calculateOutputs(double[] inputs) {
-        for (Neuron[] layer : this.neurons) {
-            // Initialize array for the newly calculated inputs for the next layer
-            double[] newInputs = new double[layer.length];
-            // Calculate the new values
-            for (int i = 0; i < layer.length; i++) {
-                newInputs[i] = layer[i].activate(inputs);
-            }
-            // Override the old inputs with the new ones
+        double[] outputs = new double[this.layers[this.layers.length - 1].getOutputs()];
+        this.calculateOutputs(inputs, outputs);
+        return outputs;
+    }
+
+    /**
+     * Calculate the output values for the given inputs without allocating. The activations of the layers in between
+     * are stored in buffers owned by the calling thread, so a Network can be used by multiple threads at once as long
+     * as it is not trained at the same time.
+     *
+     * @param inputs  the inputs to the first layer
+     * @param outputs the array to write the values the output layer produced to, at least of the length of the
+     *                output layer
+     */
+    public void calculateOutputs(double[] inputs, double[] outputs) {
+        Layer outputLayer = this.layers[this.layers.length - 1];
+        if (outputs.length < outputLayer.getOutputs())
+            throw new IllegalArgumentException("Outputs must be at least of the length of the output layer.");
+
+        double[][] buffers = this.getWorkspace();
+        for (int i = 0; i < this.layers.length - 1; i++) {
+            // Alternate between the two buffers, the previous layer's activations are the current layer's inputs
+            double[] newInputs = buffers[i & 1];
+            this.layers[i].forward(inputs, newInputs);
             inputs = newInputs;
         }
+        outputLayer.forward(inputs, outputs);
+    }
 
-        return inputs;
+    /**
+     * Calculate the output values for sparse inputs. The first layer only reads the weights of the inputs that are
+     * not 0.
+     *
+     * @param inputs the inputs to the first layer, of dimension {@link #getNrOfInputs()}
+     * @return an array of length of the output layer containing all the values the output layer produced
+     */
+    public double[] calculateOutputs(SparseVector inputs) {
+        double[] outputs = new double[this.layers[this.layers.length - 1].getOutputs()];
+        this.calculateOutputs(inputs, outputs);
+        return outputs;
     }
 
     /**
-     * Calculate the output values for the given inputs.
+     * Calculate the output values for sparse inputs without allocating, see {@link #calculateOutputs(double[],
+     * double[])}.
+     *
+     * @param inputs  the inputs to the first layer, of dimension {@link #getNrOfInputs()}
+     * @param outputs the array to write the values the output layer produced to, at least of the length of the
+     *                output layer
+     */
+    public void calculateOutputs(SparseVector inputs, double[] outputs) {
+        Layer outputLayer = this.layers[this.layers.length - 1];
+        if (outputs.length < outputLayer.getOutputs())
+            throw new IllegalArgumentException("Outputs must be at least of the length of the output layer.");
+
+        if (this.layers.length == 1) {
+            outputLayer.forward(inputs, outputs, outputs);
+            return;
+        }
+        double[][] buffers = this.getWorkspace();
+        this.layers[0].forward(inputs, buffers[0], buffers[0]);
+        double[] x = buffers[0];
+        for (int i = 1; i < this.layers.length - 1; i++) {
+            double[] newInputs = buffers[i & 1];
+            this.layers[i].forward(x, newInputs);
+            x = newInputs;
+        }
+        outputLayer.forward(x, outputs);
+    }
+
+    /**
+     * Calculate the output values for a batch of inputs. Every layer is calculated for all inputs at once as one
+     * matrix-matrix product, so the weights are loaded from memory once per batch.
+     *
+     * @param batch the inputs to the first layer, first dimension = sample
+     * @return the values the output layer produced, first dimension = sample
+     */
+    public double[][] calculateOutputs(double[][] batch) {
+        int outputs = this.layers[this.layers.length - 1].getOutputs();
+        double[] packed = new double[batch.length * this.nrOfInputs];
+        for (int s = 0; s < batch.length; s++) {
+            System.arraycopy(batch[s], 0, packed, s * this.nrOfInputs, this.nrOfInputs);
+        }
+        double[] flat = new double[batch.length * outputs];
+        this.calculateOutputs(packed, batch.length, flat);
+
+        double[][] result = new double[batch.length][];
+        for (int s = 0; s < batch.length; s++) {
+            result[s] = Arrays.copyOfRange(flat, s * outputs, (s + 1) * outputs);
+        }
+        return result;
+    }
+
+    /**
+     * Calculate the output values for a batch of inputs stored as row-major matrices.
+     *
+     * @param inputs  the inputs to the first layer, one row of {@link #getNrOfInputs()} values per sample
+     * @param samples the number of samples in the batch
+     * @param outputs the array to write the values the output layer produced to, one row per sample
+     * @see #calculateOutputs(double[][])
+     */
+    public void calculateOutputs(double[] inputs, int samples, double[] outputs) {
+        Layer outputLayer = this.layers[this.layers.length - 1];
+        if (inputs.length < samples * this.nrOfInputs || outputs.length < samples * outputLayer.getOutputs())
+            throw new IllegalArgumentException("Inputs and outputs must hold a row for every sample.");
+
+        int width = 0;
+        for (int i = 0; i < this.layers.length - 1; i++) width = Math.max(width, this.layers[i].getOutputs());
+        double[][] buffers = this.getWorkspace(samples * width);
+        for (int i = 0; i < this.layers.length - 1; i++) {
+            double[] newInputs = buffers[i & 1];
+            this.layers[i].forward(inputs, samples, newInputs);
+            inputs = newInputs;
+        }
+        outputLayer.forward(inputs, samples, outputs);
+    }
+
+    /**
+     * Calculate the activations of all Neurons for the given inputs.
      *
      * @param inputs the inputs to the first layer
-     * @return an array of length neurons[neurons.length - 1].length containing all the values the output layer produced
+     * @return an array with the activations of every layer, [Layer][Neuron]
      */
     public double[][] calculateAllNeuronActivations(double[] inputs) {
-        double[][] result = new double[this.neurons.length][];
+        double[][] result = new double[this.layers.length][];
 
-        for (int i = 0; i < this.neurons.length; i++) {
-            Neuron[] layer = this.neurons[i];
+        for (int i = 0; i < this.layers.length; i++) {
+            Layer layer = this.layers[i];
             // Initialize array for the newly calculated inputs for the next layer
-            double[] newInputs = new double[layer.length];
+            double[] newInputs = new double[layer.getOutputs()];
             // Calculate the new values
-            for (int j = 0; j < layer.length; j++) {
-                newInputs[j] = layer[j].activate(inputs);
-            }
+            layer.forward(inputs, newInputs);
             // Override the old inputs with the new ones
             inputs = newInputs;
 
@@ -98,30 +291,74 @@ public class Network implements Serializable {
     }
 
     /**
-     * Train the neural network so the result(inputs) tends toward the {@code expectedOutput}.
+     * Train the neural network so the result(inputs) tends toward the {@code expectedOutput}. Runs one forward and
+     * one backward pass per sample and updates the weights and biases once with the average gradient.
      *
      * @param inputs         the inputs to train on, first dimension = time, then the input vector of values
      * @param expectedOutput the expected outputs to the given inputs, same dimensions as the {@code inputs}
+     * @see Backpropagation
      */
     public void backPropagationTrain(double[][] inputs, double[][] expectedOutput) {
         if (inputs.length != expectedOutput.length)
             throw new IllegalArgumentException("Back Propagation can only be calculated for vectors of the same length.");
 
-        double[][][] activation = new double[expectedOutput.length][inputs.length][];
+        Backpropagation backpropagation = this.backpropagation;
+        if (backpropagation == null) this.backpropagation = backpropagation = new Backpropagation(this);
+        backpropagation.clear();
 
         for (int i = 0; i < inputs.length; i++) {
-            activation[i] = calculateAllNeuronActivations(inputs[i]);
+            backpropagation.accumulate(inputs[i], expectedOutput[i]);
+        }
+        this.applyGradients(backpropagation.getGradients(), Neuron.TRAINING_ALPHA);
+    }
+
+    /**
+     * Update the weights and biases against the average of the given gradients (gradient descent).
+     *
+     * @param gradients    the summed gradients of a number of samples
+     * @param learningRate the factor the average gradient is multiplied with before it is subtracted
+     */
+    public void applyGradients(Gradients gradients, double learningRate) {
+        if (gradients.getSamples() == 0) return;
+        double factor = learningRate / gradients.getSamples();
+        for (int i = 0; i < this.layers.length; i++) {
+            double[] weights = this.layers[i].getWeights(), gradWeights = gradients.getWeights(i);
+            for (int j = 0; j < weights.length; j++) weights[j] -= factor * gradWeights[j];
+            double[] biases = this.layers[i].getBiases(), gradBiases = gradients.getBiases(i);
+            for (int j = 0; j < biases.length; j++) biases[j] -= factor * gradBiases[j];
         }
+    }
 
-        // Calculate cost gradients and add them to the weights
-        for (int i = 0; i < this.neurons.length; i++) {
-            for (int j = 0; j < this.neurons[i].length; j++) {
-                double[] costGradient = this.getCostGradient(inputs, expectedOutput, activation, i, j);
-                this.neurons[i][j].addToWeights(costGradient);
+    /**
+     * @return the ping-pong buffers of the current thread, each large enough for the widest layer
+     */
+    private double[][] getWorkspace() {
+        ThreadLocal<double[][]> workspaces = this.workspaces;
+        if (workspaces == null) {
+            synchronized (this) {
+                workspaces = this.workspaces;
+                if (workspaces == null) {
+                    int width = 0;
+                    for (Layer layer : this.layers) width = Math.max(width, layer.getOutputs());
+                    int maxWidth = width;
+                    this.workspaces = workspaces = ThreadLocal.withInitial(() -> new double[2][maxWidth]);
+                }
             }
         }
+        return workspaces.get();
+    }
 
-        // TODO: Backpropagation missing
+    /**
+     * @param length the number of values each buffer must hold
+     * @return the ping-pong buffers of the current thread, grown to at least the given length
+     */
+    private double[][] getWorkspace(int length) {
+        double[][] buffers = this.getWorkspace();
+        if (buffers[0].length < length) {
+            buffers[0] = new double[length];
+            buffers[1] = new double[length];
+        }
+        return buffers;
     }
 
     /**
@@ -155,8 +392,20 @@ public class Network implements Serializable {
      * @throws ClassNotFoundException when the file does not match a known class
      */
     public static Network readFromDisk(String filename) throws IOException, ClassNotFoundException {
-        String filepath = System.getProperty("user.dir") + filename + ".network";
-        try (FileInputStream inStream = new FileInputStream(filepath); ObjectInputStream oInStream = new ObjectInputStream(inStream)) {
+        return readFromDisk(Path.of(System.getProperty("user.dir") + filename + ".network"));
+    }
+
+    /**
+     * Read a serialized network from the disk.
+     *
+     * @param path the path of the file
+     * @return the network from disk
+     * @throws IOException            when the file opening throws this exception
+     * @throws ClassNotFoundException when the file does not match a known class
+     * @see #readFromDisk(String)
+     */
+    public static Network readFromDisk(Path path) throws IOException, ClassNotFoundException {
+        try (InputStream inStream = Files.newInputStream(path); ObjectInputStream oInStream = new ObjectInputStream(new BufferedInputStream(inStream))) {
             return (Network) oInStream.readObject();
         }
     }
@@ -193,50 +442,25 @@ public class Network implements Serializable {
     }
 
     /**
-     * @param input       the training input data that leads to the activations array
-     * @param activations the 3d-matrix with [Time][Layer][Neuron]
-     * @param layer       the second index for activations
-     * @param node        the third index for activations
-     * @return the cost gradient for the specific node at the specific time
+     * Read a Network, Networks serialized as a {@code Neuron[][]} before the weights were stored in {@link Layer}s
+     * are converted.
      */
-    private double[] getCostGradient(double[][] input, double[][] expected, double[][][] activations, int layer, int node) {
-        // input[0].length == input[1].length == input[n].length, the index only changes the time so input[0].length == nr of inputs per data set
-        int previousLayerNeuronsLength = layer > 0 ? this.neurons[layer - 1].length : input[0].length;
-
-        double[][] aL1k = new double[previousLayerNeuronsLength][activations.length]; // [i][j]; i = incoming edge with activation value of the previous neuron, j = time
-        double[] ds = new double[activations.length];
-        double[] magnitude = new double[activations.length];
-        // Calculate d C / d w^L_jk
-        for (int time = 0; time < activations.length; time++) {
-            // Handle layer == 0
-            double[] previousLayerActivations = layer > 0 ? activations[time][layer - 1] : input[time];
-
-            // Calculate a^(L-1)_k = dz_L / dw_L
-            for (int k = 0; k < aL1k.length; k++) aL1k[k][time] = previousLayerActivations[k];
-            // Calculate sigmoid'(z^L_j) = da_L / dz_L
-            ds[time] = Neuron.sigmoidDerivative(this.neurons[layer][node], input[time]);
-            // Calculate 2 * (a^L - expected) = dC_0/da_L
-            magnitude[time] = -2 * (activations[time][layer][node] - expected[time][node]);
-
-//            System.out.println(activations[time][layer][node] + ", " + expected[time][node] + " so resulting in " + aL1k[0][time] + "*" + ds[time] + "*" + magnitude[time] + " = " + aL1k[0][time] * ds[time] * magnitude[time]);
-        }
-
-        // Recurse the previous layer with the newly calculated expected values
-        double[] res = new double[aL1k.length];
-        for (int i = 0; i < res.length; i++) {
-            for (int j = 0; j < activations.length; j++) {
-                res[i] += (aL1k[i][j] * ds[j] * magnitude[j]);
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.nrOfInputs = fields.get("nrOfInputs", 0);
+        this.layers = (Layer[]) fields.get("layers", null);
+        if (this.layers == null) {
+            Neuron[][] neurons = (Neuron[][]) fields.get("neurons", null);
+            this.layers = new Layer[neurons.length];
+            for (int i = 0; i < neurons.length; i++) {
+                int layerInputs = i == 0 ? this.nrOfInputs : neurons[i - 1].length;
+                this.layers[i] = new Layer(layerInputs, neurons[i].length);
+                for (int j = 0; j < neurons[i].length; j++) {
+                    this.layers[i].getNeuron(j).setWeights(neurons[i][j].getWeights());
+                    this.layers[i].getNeuron(j).setBias(neurons[i][j].getBias());
+                }
             }
-
-            // 1. Multiply the Training effectiveness and 2. Take the average instead of the sum
-            res[i] *= (Neuron.TRAINING_ALPHA / activations.length);
-
         }
-        return res;
     }
 }
-
-enum ActivationType {
-    LINEAR, // Unused, Cost Gradient must be updated to support Linear ActivationType
-    SIGMOID // Requires a more complex learning algorithm with derivatives, see https://towardsdatascience.com/step-by-step-guide-to-building-your-own-neural-network-from-scratch-df64b1c5ab6e
-}
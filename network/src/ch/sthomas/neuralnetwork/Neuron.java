@@ -1,9 +1,15 @@
 package ch.sthomas.neuralnetwork;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Arrays;
 
+/**
+ * A single Neuron. The weights and the bias are stored in a {@link Layer}, a Neuron obtained from
+ * {@link Layer#getNeuron(int)} is a view on one row of the layer's weights matrix.
+ */
 public class Neuron implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
@@ -16,9 +22,13 @@ public class Neuron implements Serializable {
      * The maximum deviation that expected and actual result may have during training the Neuron.
      */
     public static final double MAX_TRAINING_DEVIATION = 0.1;
+    /**
+     * The maximum number of corrections {@link #train(double[], double)} makes before it gives up.
+     */
+    public static final int MAX_TRAINING_ITERATIONS = 100_000;
 
-    private double[] weights;
-    private double bias;
+    private Layer layer;
+    private int index;
     /**
      * Unused
      */
@@ -33,64 +43,93 @@ public class Neuron implements Serializable {
      * @see Neuron#addToBias(double)
      */
     public Neuron(double[] weights, double bias) {
-        this.weights = weights;
-        this.bias = bias;
+        this(new Layer(weights.length, 1, weights, new double[]{bias}), 0);
+    }
+
+    /**
+     * Create a new view on the Neuron {@code index} of the {@code layer}.
+     *
+     * @param layer the layer storing the weights and the bias
+     * @param index the index of the Neuron in the layer
+     */
+    Neuron(Layer layer, int index) {
+        this.layer = layer;
+        this.index = index;
         this.activationThreshold = this.calcActivationThreshold();
     }
 
+    /**
+     * Train the Neuron with a perception-algorithm, making at most {@link #MAX_TRAINING_ITERATIONS} corrections.
+     *
+     * @param inputs         the input that should resolve to the expected result
+     * @param expectedResult the expectation of the result the Neuron should be trained towards
+     * @return true if the result is within {@link #MAX_TRAINING_DEVIATION} of the expected result, false if the
+     * iterations ran out before, for example because the expected result cannot be reached by the activation function
+     * @see Neuron#TRAINING_ALPHA
+     * @see Neuron#MAX_TRAINING_DEVIATION
+     */
+    public boolean train(double[] inputs, double expectedResult) {
+        return this.train(inputs, expectedResult, MAX_TRAINING_ITERATIONS);
+    }
+
     /**
      * Train the Neuron with a perception-algorithm.
      *
      * @param inputs         the input that should resolve to the expected result
      * @param expectedResult the expectation of the result the Neuron should be trained towards
+     * @param maxIterations  the maximum number of corrections to make
+     * @return true if the result is within {@link #MAX_TRAINING_DEVIATION} of the expected result, false if the
+     * iterations ran out before
      * @see Neuron#TRAINING_ALPHA
      * @see Neuron#MAX_TRAINING_DEVIATION
      */
-    public void train(double[] inputs, double expectedResult) {
+    public boolean train(double[] inputs, double expectedResult, int maxIterations) {
+        double[] weights = this.layer.getWeights();
+        int row = this.row();
         double actualResult = activate(inputs);
-        while (Math.abs(actualResult - expectedResult) > MAX_TRAINING_DEVIATION) {
-            for (int i = 0; i < this.weights.length; i++) {
-                this.weights[i] += TRAINING_ALPHA * inputs[i] * (expectedResult - actualResult);
+        for (int iteration = 0; Math.abs(actualResult - expectedResult) > MAX_TRAINING_DEVIATION; iteration++) {
+            if (iteration >= maxIterations) return false;
+            for (int i = 0; i < this.layer.getInputs(); i++) {
+                weights[row + i] += TRAINING_ALPHA * inputs[i] * (expectedResult - actualResult);
             }
             actualResult = activate(inputs);
         }
+        return true;
     }
 
     /**
-     * Fire the neuron if it exceeds its activationValue given the input values. Uses the algorithm specified in
-     * {@link Network#ACTIVATION_TYPE}.
+     * Fire the neuron if it exceeds its activationValue given the input values. Uses the activation function of the
+     * layer the Neuron belongs to.
      *
      * @param inputs from the previous layer or program inputs
-     * @return 1.0 if it fires and 0.0 if it does not
-     * @see Network#ACTIVATION_TYPE
+     * @return the activation value of the Neuron
+     * @see Layer#getActivation()
      */
     public double activate(double[] inputs) {
-        return calculateValue(inputs); // > this.activationValue ? 1.0 : 0.0;
+        return this.layer.activate(this.index, inputs); // > this.activationValue ? 1.0 : 0.0;
     }
 
     /**
-     * Calculate the value of the neuron. Represents {@code a}, the activation value, in the 3B1B-video.
+     * Returns a copy of the weights of the incoming edges.
      *
-     * @param inputs the inputs to calculate the value for
-     * @return the value of the neuron given the inputs
-     * @see Network#ACTIVATION_TYPE
+     * @return the weights
      */
-    private double calculateValue(double[] inputs) {
-        // If inputs have more value than the weights or the other way around, the resulting values should just be 0, so they can just be ignored
-        return switch (Network.ACTIVATION_TYPE) {
-            case LINEAR -> linearActivation(inputs);
-            case SIGMOID -> sigmoidActivation(inputs);
-        };
+    public double[] getWeights() {
+        int row = this.row();
+        return Arrays.copyOfRange(this.layer.getWeights(), row, row + this.layer.getInputs());
     }
 
     /**
-     * Set the weights to a new array. May be of different size than the current weights-array.
+     * Set the weights to new values. The weights are copied into the layer's weights matrix, so they must be of the
+     * same size as the current weights.
      *
      * @param weights the new weights
      * @see Neuron#addToWeights(double[])
      */
     public void setWeights(double[] weights) {
-        this.weights = weights;
+        if (this.layer.getInputs() != weights.length)
+            throw new IllegalArgumentException("Length of the new weights must match the already existing weights' length.");
+        System.arraycopy(weights, 0, this.layer.getWeights(), this.row(), weights.length);
     }
 
     /**
@@ -100,13 +139,22 @@ public class Neuron implements Serializable {
      * @see Neuron#setWeights(double[])
      */
     public void addToWeights(double[] values) {
-        if (this.weights.length != values.length)
+        if (this.layer.getInputs() != values.length)
             throw new IllegalArgumentException("Length of weights to change must match the already existing weights' length.");
-        for (int i = 0; i < this.weights.length; i++) {
-            this.weights[i] += values[i];
+        double[] weights = this.layer.getWeights();
+        int row = this.row();
+        for (int i = 0; i < values.length; i++) {
+            weights[row + i] += values[i];
         }
     }
 
+    /**
+     * @return the bias of the Neuron
+     */
+    public double getBias() {
+        return this.layer.getBiases()[this.index];
+    }
+
     /**
      * Set the bias to a new value.
      *
@@ -114,7 +162,7 @@ public class Neuron implements Serializable {
      * @see Neuron#addToBias(double)
      */
     public void setBias(double bias) {
-        this.bias = bias;
+        this.layer.getBiases()[this.index] = bias;
     }
 
     /**
@@ -124,7 +172,7 @@ public class Neuron implements Serializable {
      * @see Neuron#setBias(double)
      */
     public void addToBias(double value) {
-        this.bias += value;
+        this.layer.getBiases()[this.index] += value;
     }
 
     /**
@@ -157,12 +205,7 @@ public class Neuron implements Serializable {
      * @return the value of z
      */
     public double z(double[] x) {
-        double sum = 0.0;
-        for (int i = 0; i < this.weights.length; i++) {
-            sum += this.weights[i] * x[i];
-        }
-        sum += this.bias;
-        return sum;
+        return this.layer.z(this.index, x);
     }
 
     /**
@@ -174,17 +217,7 @@ public class Neuron implements Serializable {
      * @see Neuron#z(double[])
      */
     private double sigmoidActivation(double[] input) {
-        return (1 / (1 + Math.exp(-z(input))));
-    }
-
-    /**
-     * Return the value of a linear function with z = w_T * x + b, where b = bias
-     *
-     * @param input the input value x
-     * @return the value of z
-     */
-    private double linearActivation(double[] input) {
-        return z(input);
+        return ActivationType.SIGMOID.activate(z(input));
     }
 
     public static double sigmoidDerivative(Neuron target, double[] input) {
@@ -192,17 +225,26 @@ public class Neuron implements Serializable {
         return activation * (1 - activation);
     }
 
+    private int row() {
+        return this.index * this.layer.getInputs();
+    }
+
     /**
      * Indicates whether some other object is "equal to" this one.
      */
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof (Neuron n)
-                && this.weights == n.weights
-                && this.bias == n.bias
+        return obj instanceof Neuron n
+                && this.layer == n.layer
+                && this.index == n.index
                 && this.activationThreshold == n.activationThreshold;
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(this.layer) + this.index;
+    }
+
     /**
      * Returns a string representation of the object.
      *
@@ -210,6 +252,21 @@ public class Neuron implements Serializable {
      */
     @Override
     public String toString() {
-        return "N={" + Arrays.toString(this.weights) + ";b=" + this.bias + ";t=" + this.activationThreshold + "}";
+        return "N={" + Arrays.toString(this.getWeights()) + ";b=" + this.getBias() + ";t=" + this.activationThreshold + "}";
+    }
+
+    /**
+     * Read a Neuron, Neurons serialized before the weights were stored in a {@link Layer} are converted.
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.layer = (Layer) fields.get("layer", null);
+        this.index = fields.get("index", 0);
+        this.activationThreshold = fields.get("activationThreshold", 0.0);
+        if (this.layer == null) {
+            double[] weights = (double[]) fields.get("weights", null);
+            this.layer = new Layer(weights.length, 1, weights, new double[]{fields.get("bias", 0.0)});
+        }
     }
 }
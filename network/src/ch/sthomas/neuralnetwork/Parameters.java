@@ -0,0 +1,86 @@
+package ch.sthomas.neuralnetwork;
+
+/**
+ * A copy of the weights and biases of every layer of a {@link Network}. The arrays are allocated once, so the same
+ * instance can be refreshed from the network again and again, for example to keep the best weights seen during
+ * training.
+ */
+public class Parameters {
+    private final double[][] weights;
+    private final double[][] biases;
+
+    /**
+     * Copy the weights and biases of a network.
+     *
+     * @param network the network to copy
+     */
+    public Parameters(Network network) {
+        Layer[] layers = network.getLayers();
+        this.weights = new double[layers.length][];
+        this.biases = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            this.weights[i] = layers[i].getWeights().clone();
+            this.biases[i] = layers[i].getBiases().clone();
+        }
+    }
+
+    /**
+     * @return the number of layers
+     */
+    public int getLayers() {
+        return this.weights.length;
+    }
+
+    /**
+     * @param layer the index of the layer
+     * @return the copied row-major weights of the layer
+     */
+    public double[] getWeights(int layer) {
+        return this.weights[layer];
+    }
+
+    /**
+     * @param layer the index of the layer
+     * @return the copied biases of the layer
+     */
+    public double[] getBiases(int layer) {
+        return this.biases[layer];
+    }
+
+    /**
+     * Overwrite this copy with the current weights and biases of a network.
+     *
+     * @param network the network to copy, of the same shape as the one this copy was created from
+     */
+    public void copyFrom(Network network) {
+        Layer[] layers = this.checkShape(network);
+        for (int i = 0; i < layers.length; i++) {
+            System.arraycopy(layers[i].getWeights(), 0, this.weights[i], 0, this.weights[i].length);
+            System.arraycopy(layers[i].getBiases(), 0, this.biases[i], 0, this.biases[i].length);
+        }
+    }
+
+    /**
+     * Overwrite the weights and biases of a network with this copy.
+     *
+     * @param network the network to restore, of the same shape as the one this copy was created from
+     */
+    public void copyTo(Network network) {
+        Layer[] layers = this.checkShape(network);
+        for (int i = 0; i < layers.length; i++) {
+            System.arraycopy(this.weights[i], 0, layers[i].getWeights(), 0, this.weights[i].length);
+            System.arraycopy(this.biases[i], 0, layers[i].getBiases(), 0, this.biases[i].length);
+        }
+    }
+
+    private Layer[] checkShape(Network network) {
+        Layer[] layers = network.getLayers();
+        if (layers.length != this.weights.length)
+            throw new IllegalArgumentException("Network does not have the shape of the parameters.");
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i].getWeights().length != this.weights[i].length || layers[i].getBiases().length != this.biases[i].length)
+                throw new IllegalArgumentException("Network does not have the shape of the parameters.");
+        }
+        return layers;
+    }
+}
@@ -0,0 +1,121 @@
+package ch.sthomas.neuralnetwork;
+
+import java.util.Arrays;
+
+/**
+ * A vector of which only a few values are not 0, stored as the indices and values of those entries, for example a
+ * one-hot or hashed feature vector. The first layer of a network consumes it directly, so the work of a forward and
+ * backward pass scales with the number of non-zeros instead of the dimension.
+ * <p>
+ * A SparseVector is mutable, so one instance can be refilled for every sample.
+ */
+public class SparseVector {
+    private final int dimension;
+    private int[] indices;
+    private double[] values;
+    private int size;
+
+    /**
+     * Create an empty vector.
+     *
+     * @param dimension the length of the dense vector
+     * @param capacity  the number of non-zeros to reserve space for, grown when exceeded
+     */
+    public SparseVector(int dimension, int capacity) {
+        if (dimension < 0 || capacity < 0)
+            throw new IllegalArgumentException("Dimension and capacity must not be negative.");
+        this.dimension = dimension;
+        this.indices = new int[capacity];
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Create a vector from its non-zero entries. The arrays are copied.
+     *
+     * @param dimension the length of the dense vector
+     * @param indices   the indices of the entries, distinct
+     * @param values    the values of the entries
+     */
+    public SparseVector(int dimension, int[] indices, double[] values) {
+        this(dimension, indices.length);
+        if (indices.length != values.length)
+            throw new IllegalArgumentException("Indices and values must be of the same length.");
+        for (int k = 0; k < indices.length; k++) this.add(indices[k], values[k]);
+    }
+
+    /**
+     * @param dense the dense vector
+     * @return a vector with the entries of {@code dense} that are not 0
+     */
+    public static SparseVector of(double[] dense) {
+        int nonZeros = 0;
+        for (double value : dense) if (value != 0.0) nonZeros++;
+        SparseVector vector = new SparseVector(dense.length, nonZeros);
+        for (int i = 0; i < dense.length; i++) if (dense[i] != 0.0) vector.add(i, dense[i]);
+        return vector;
+    }
+
+    /**
+     * @return the length of the dense vector
+     */
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    /**
+     * @return the number of stored entries
+     */
+    public int getNonZeros() {
+        return this.size;
+    }
+
+    /**
+     * @param entry the index of the entry, from 0 to {@link #getNonZeros()} - 1
+     * @return the index of the entry in the dense vector
+     */
+    public int getIndex(int entry) {
+        return this.indices[entry];
+    }
+
+    /**
+     * @param entry the index of the entry, from 0 to {@link #getNonZeros()} - 1
+     * @return the value of the entry
+     */
+    public double getValue(int entry) {
+        return this.values[entry];
+    }
+
+    /**
+     * Add an entry. The index must not have been added since the last {@link #clear()}.
+     *
+     * @param index the index in the dense vector
+     * @param value the value
+     */
+    public void add(int index, double value) {
+        if (index < 0 || index >= this.dimension)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for dimension " + this.dimension);
+        if (this.size == this.indices.length) {
+            int capacity = Math.max(8, 2 * this.size);
+            this.indices = Arrays.copyOf(this.indices, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        this.indices[this.size] = index;
+        this.values[this.size++] = value;
+    }
+
+    /**
+     * Remove all entries, keeping the reserved space.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * @return the dense vector
+     */
+    public double[] toDense() {
+        double[] dense = new double[this.dimension];
+        for (int k = 0; k < this.size; k++) dense[this.indices[k]] += this.values[k];
+        return dense;
+    }
+}
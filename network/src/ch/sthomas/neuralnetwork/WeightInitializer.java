@@ -0,0 +1,194 @@
+package ch.sthomas.neuralnetwork;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Schemes to initialize the weights of a {@link Layer} with random values scaled to the number of inputs (fan-in) and
+ * Neurons (fan-out) of the layer. The biases are set to 0.
+ * <p>
+ * A network is initialized from a {@link RandomGenerator.SplittableGenerator}: every layer is cut into chunks of
+ * {@link #CHUNK_SIZE} weights and one generator per chunk is split off in order, before the chunks are filled in
+ * parallel. The weights therefore only depend on the seed, not on the number of threads.
+ */
+public enum WeightInitializer {
+    /**
+     * Uniform in [0, 1), how networks were initialized before the other schemes existed.
+     */
+    UNIFORM {
+        @Override
+        double sample(RandomGenerator random, double scale) {
+            return random.nextDouble();
+        }
+
+        @Override
+        double scale(int fanIn, int fanOut) {
+            return 1.0;
+        }
+    },
+    /**
+     * Xavier/Glorot uniform in +/-sqrt(6 / (fanIn + fanOut)), for sigmoid, tanh and linear layers.
+     */
+    XAVIER_UNIFORM {
+        @Override
+        double sample(RandomGenerator random, double scale) {
+            return scale * (2 * random.nextDouble() - 1);
+        }
+
+        @Override
+        double scale(int fanIn, int fanOut) {
+            return Math.sqrt(6.0 / Math.max(1, fanIn + fanOut));
+        }
+    },
+    /**
+     * Xavier/Glorot normal with a standard deviation of sqrt(2 / (fanIn + fanOut)).
+     */
+    XAVIER_NORMAL {
+        @Override
+        double sample(RandomGenerator random, double scale) {
+            return scale * random.nextGaussian();
+        }
+
+        @Override
+        double scale(int fanIn, int fanOut) {
+            return Math.sqrt(2.0 / Math.max(1, fanIn + fanOut));
+        }
+    },
+    /**
+     * He uniform in +/-sqrt(6 / fanIn), for ReLU layers.
+     */
+    HE_UNIFORM {
+        @Override
+        double sample(RandomGenerator random, double scale) {
+            return scale * (2 * random.nextDouble() - 1);
+        }
+
+        @Override
+        double scale(int fanIn, int fanOut) {
+            return Math.sqrt(6.0 / Math.max(1, fanIn));
+        }
+    },
+    /**
+     * He normal with a standard deviation of sqrt(2 / fanIn), for ReLU layers.
+     */
+    HE_NORMAL {
+        @Override
+        double sample(RandomGenerator random, double scale) {
+            return scale * random.nextGaussian();
+        }
+
+        @Override
+        double scale(int fanIn, int fanOut) {
+            return Math.sqrt(2.0 / Math.max(1, fanIn));
+        }
+    };
+
+    /**
+     * The number of weights filled from one generator split off the network's generator.
+     */
+    public static final int CHUNK_SIZE = 1 << 14;
+    /**
+     * The number of weights of a network from which on the chunks are filled in parallel.
+     */
+    private static final long PARALLEL_THRESHOLD = 1 << 18;
+
+    /**
+     * @param random the generator to draw from
+     * @param scale  the value of {@link #scale(int, int)} for the layer
+     * @return one random weight
+     */
+    abstract double sample(RandomGenerator random, double scale);
+
+    /**
+     * @return the limit or standard deviation of the distribution for a layer
+     */
+    abstract double scale(int fanIn, int fanOut);
+
+    /**
+     * @param activation the activation function of a layer
+     * @return He normal for ReLU layers, Xavier uniform for all other layers
+     */
+    public static WeightInitializer forActivation(Activation activation) {
+        return activation == ActivationType.RELU || activation == ActivationType.LEAKY_RELU ? HE_NORMAL : XAVIER_UNIFORM;
+    }
+
+    /**
+     * Initialize the weights of a layer and set its biases to 0.
+     *
+     * @param layer  the layer to initialize
+     * @param random the generator to draw the weights from
+     */
+    public void initialize(Layer layer, RandomGenerator random) {
+        double[] weights = layer.getWeights();
+        double scale = this.scale(layer.getInputs(), layer.getOutputs());
+        for (int i = 0; i < weights.length; i++) weights[i] = this.sample(random, scale);
+        Arrays.fill(layer.getBiases(), 0.0);
+    }
+
+    /**
+     * Initialize every layer of a network with this scheme and set the biases to 0.
+     *
+     * @param network the network to initialize
+     * @param random  the generator to split the generators of the chunks off, e.g. a seeded
+     *                {@link java.util.SplittableRandom}
+     */
+    public void initialize(Network network, RandomGenerator.SplittableGenerator random) {
+        WeightInitializer[] schemes = new WeightInitializer[network.getLayers().length];
+        Arrays.fill(schemes, this);
+        initialize(network, schemes, random);
+    }
+
+    /**
+     * Initialize every layer of a network with the scheme fitting its activation function and set the biases to 0.
+     *
+     * @param network the network to initialize
+     * @param random  the generator to split the generators of the chunks off
+     * @see #forActivation(Activation)
+     */
+    public static void initializeDefault(Network network, RandomGenerator.SplittableGenerator random) {
+        Layer[] layers = network.getLayers();
+        WeightInitializer[] schemes = new WeightInitializer[layers.length];
+        for (int i = 0; i < layers.length; i++) schemes[i] = forActivation(layers[i].getActivation());
+        initialize(network, schemes, random);
+    }
+
+    private static void initialize(Network network, WeightInitializer[] schemes, RandomGenerator.SplittableGenerator random) {
+        Layer[] layers = network.getLayers();
+
+        // Split the generators of all chunks in order, so the result does not depend on how the chunks are scheduled
+        int chunks = 0;
+        long weights = 0;
+        for (Layer layer : layers) {
+            chunks += chunks(layer);
+            weights += layer.getWeights().length;
+        }
+        int[] chunkLayers = new int[chunks];
+        int[] chunkStarts = new int[chunks];
+        RandomGenerator[] generators = new RandomGenerator[chunks];
+        for (int l = 0, chunk = 0; l < layers.length; l++) {
+            for (int k = 0; k < chunks(layers[l]); k++, chunk++) {
+                chunkLayers[chunk] = l;
+                chunkStarts[chunk] = k * CHUNK_SIZE;
+                generators[chunk] = random.split();
+            }
+            Arrays.fill(layers[l].getBiases(), 0.0);
+        }
+
+        IntStream indices = IntStream.range(0, chunks);
+        if (weights >= PARALLEL_THRESHOLD) indices = indices.parallel();
+        indices.forEach(chunk -> {
+            Layer layer = layers[chunkLayers[chunk]];
+            WeightInitializer scheme = schemes[chunkLayers[chunk]];
+            double[] values = layer.getWeights();
+            double scale = scheme.scale(layer.getInputs(), layer.getOutputs());
+            RandomGenerator generator = generators[chunk];
+            int end = Math.min(values.length, chunkStarts[chunk] + CHUNK_SIZE);
+            for (int i = chunkStarts[chunk]; i < end; i++) values[i] = scheme.sample(generator, scale);
+        });
+    }
+
+    private static int chunks(Layer layer) {
+        return (layer.getWeights().length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+}
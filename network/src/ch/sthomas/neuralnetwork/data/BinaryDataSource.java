@@ -0,0 +1,242 @@
+package ch.sthomas.neuralnetwork.data;
+
+import ch.sthomas.neuralnetwork.io.DataType;
+import ch.sthomas.neuralnetwork.training.DataSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams samples from a file of packed binary rows, mapped into memory one window at a time, so files of any size can
+ * be read with a bounded amount of address space. All values are little-endian:
+ * <pre>
+ * int    magic, "NNJD"
+ * int    version
+ * int    data type id of the values, see {@link DataType}
+ * int    input size I
+ * int    output size O
+ * int    padding
+ * long   number of rows
+ * every row:
+ *   I input values followed by O expected output values
+ * </pre>
+ *
+ * @see #write(DataSource, Path, DataType)
+ */
+public class BinaryDataSource implements DataSource {
+    /**
+     * The first four bytes of every data file.
+     */
+    public static final int MAGIC = 'N' | 'N' << 8 | 'J' << 16 | 'D' << 24;
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The default number of bytes mapped at a time.
+     */
+    public static final int DEFAULT_WINDOW_BYTES = 64 << 20;
+
+    static final int HEADER_BYTES = 32;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final DataType dataType;
+    private final int inputSize;
+    private final int outputSize;
+    private final long rows;
+    private final int rowBytes;
+    private final long rowsPerWindow;
+
+    /**
+     * The mapped window as values of the data type, only one of them is used
+     */
+    private DoubleBuffer doubles;
+    private FloatBuffer floats;
+    private long windowStart;
+    private long windowEnd;
+    private long row;
+
+    /**
+     * Open a data file, mapping {@link #DEFAULT_WINDOW_BYTES} at a time.
+     *
+     * @param path the file to read
+     * @throws IOException when the file cannot be read or is not a data file
+     */
+    public BinaryDataSource(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * Open a data file.
+     *
+     * @param path        the file to read
+     * @param windowBytes the number of bytes to map at a time, at least one row is always mapped
+     * @throws IOException when the file cannot be read or is not a data file
+     */
+    public BinaryDataSource(Path path, int windowBytes) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (this.channel.read(header) < 0) throw new IOException(path + " is not a data file.");
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) throw new IOException(path + " is not a data file.");
+            int version = header.getInt();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported data file version " + version + ".");
+            try {
+                this.dataType = DataType.fromId(header.getInt());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            this.inputSize = header.getInt();
+            this.outputSize = header.getInt();
+            header.getInt();
+            this.rows = header.getLong();
+            if (this.inputSize < 0 || this.outputSize < 0 || this.rows < 0)
+                throw new IOException(path + " has a corrupted header.");
+            this.rowBytes = (this.inputSize + this.outputSize) * this.dataType.getBytes();
+            if (HEADER_BYTES + this.rows * this.rowBytes > this.channel.size())
+                throw new IOException(path + " is truncated.");
+            this.rowsPerWindow = Math.max(1, windowBytes / Math.max(1, this.rowBytes));
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write all samples of a source to a data file, for example to convert a CSV file once before training from it
+     * many times.
+     *
+     * @param source   the source to read one pass of
+     * @param target   the file to write, replaced if it exists
+     * @param dataType the type to store the values as
+     * @return the number of rows written
+     * @throws IOException when the source cannot be read or the file cannot be written
+     */
+    public static long write(DataSource source, Path target, DataType dataType) throws IOException {
+        int inputSize = source.getInputSize(), outputSize = source.getOutputSize();
+        double[] input = new double[inputSize], expected = new double[outputSize];
+        int rowBytes = (inputSize + outputSize) * dataType.getBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(CHUNK_BYTES, rowBytes)).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            source.rewind();
+            long rows = 0;
+            while (source.next(input, expected)) {
+                if (buffer.remaining() < rowBytes) flush(buffer, channel);
+                put(buffer, input, dataType);
+                put(buffer, expected, dataType);
+                rows++;
+            }
+            flush(buffer, channel);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(dataType.getId()).putInt(inputSize).putInt(outputSize).putInt(0).putLong(rows);
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer, buffer.position());
+            return rows;
+        }
+    }
+
+    /**
+     * @return the type the values are stored as
+     */
+    public DataType getDataType() {
+        return this.dataType;
+    }
+
+    /**
+     * @return the number of samples in the file
+     */
+    public long getRows() {
+        return this.rows;
+    }
+
+    @Override
+    public int getInputSize() {
+        return this.inputSize;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return this.outputSize;
+    }
+
+    @Override
+    public void rewind() {
+        this.row = 0;
+    }
+
+    @Override
+    public boolean next(double[] input, double[] expected) throws IOException {
+        if (this.row >= this.rows) return false;
+        if ((this.doubles == null && this.floats == null) || this.row < this.windowStart || this.row >= this.windowEnd)
+            this.map(this.row);
+
+        int offset = (int) (this.row - this.windowStart) * (this.inputSize + this.outputSize);
+        switch (this.dataType) {
+            case FLOAT64 -> {
+                this.doubles.get(offset, input, 0, this.inputSize);
+                this.doubles.get(offset + this.inputSize, expected, 0, this.outputSize);
+            }
+            case FLOAT32 -> {
+                for (int i = 0; i < this.inputSize; i++) input[i] = this.floats.get(offset + i);
+                for (int j = 0; j < this.outputSize; j++) expected[j] = this.floats.get(offset + this.inputSize + j);
+            }
+        }
+        this.row++;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.doubles = null;
+        this.floats = null;
+        this.channel.close();
+    }
+
+    /**
+     * Map the window starting at a row.
+     */
+    private void map(long row) throws IOException {
+        this.windowStart = row;
+        this.windowEnd = Math.min(this.rows, row + this.rowsPerWindow);
+        long bytes = (this.windowEnd - this.windowStart) * this.rowBytes;
+        ByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + row * this.rowBytes, bytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        switch (this.dataType) {
+            case FLOAT64 -> this.doubles = window.asDoubleBuffer();
+            case FLOAT32 -> this.floats = window.asFloatBuffer();
+        }
+    }
+
+    private static void put(ByteBuffer buffer, double[] values, DataType dataType) {
+        switch (dataType) {
+            case FLOAT64 -> {
+                buffer.asDoubleBuffer().put(values);
+                buffer.position(buffer.position() + values.length * Double.BYTES);
+            }
+            case FLOAT32 -> {
+                for (double value : values) buffer.putFloat((float) value);
+            }
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,233 @@
+package ch.sthomas.neuralnetwork.data;
+
+import ch.sthomas.neuralnetwork.training.DataSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams samples from a file of comma separated values, one sample per line: the input values followed by the
+ * expected output values. Empty lines are skipped, and so is a header line if the source is told there is one.
+ * <p>
+ * The file is read in blocks into one reusable buffer and the numbers are parsed directly from the bytes, so reading a
+ * sample does not allocate for plain decimal numbers.
+ */
+public class CsvDataSource implements DataSource {
+    private static final int BUFFER_BYTES = 1 << 20;
+    /**
+     * The powers of ten that are exact as doubles
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Path path;
+    private final int inputSize;
+    private final int outputSize;
+    private final boolean header;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private boolean endOfFile;
+    private long line;
+
+    /**
+     * Open a CSV file.
+     *
+     * @param path       the file to read
+     * @param inputSize  the number of input values at the start of every line
+     * @param outputSize the number of expected output values following them
+     * @param header     true if the first line names the columns and is skipped
+     * @throws IOException when the file cannot be opened
+     */
+    public CsvDataSource(Path path, int inputSize, int outputSize, boolean header) throws IOException {
+        this.path = path;
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.header = header;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.rewind();
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getInputSize() {
+        return this.inputSize;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return this.outputSize;
+    }
+
+    @Override
+    public void rewind() throws IOException {
+        this.channel.position(0);
+        this.buffer.clear().limit(0);
+        this.endOfFile = false;
+        this.line = 0;
+        if (this.header) this.skipLine();
+    }
+
+    @Override
+    public boolean next(double[] input, double[] expected) throws IOException {
+        while (true) {
+            if (!this.ensureLine()) return false;
+            this.line++;
+            if (this.isEmptyLine()) {
+                this.skipLine();
+                continue;
+            }
+            for (int i = 0; i < this.inputSize; i++) input[i] = this.parseValue(i == 0);
+            for (int j = 0; j < this.outputSize; j++) expected[j] = this.parseValue(false);
+            this.skipWhitespace();
+            if (this.buffer.hasRemaining() && this.buffer.get(this.buffer.position()) != '\n')
+                throw this.error("more than " + (this.inputSize + this.outputSize) + " values");
+            this.skipLine();
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Make sure the buffer holds the whole next line, reading the next block if needed.
+     *
+     * @return false at the end of the file
+     */
+    private boolean ensureLine() throws IOException {
+        while (true) {
+            for (int i = this.buffer.position(); i < this.buffer.limit(); i++) {
+                if (this.buffer.get(i) == '\n') return true;
+            }
+            if (this.endOfFile) return this.buffer.hasRemaining();
+            if (this.buffer.position() == 0 && this.buffer.limit() == this.buffer.capacity())
+                throw new IOException(this.path + ": line longer than " + BUFFER_BYTES + " bytes.");
+            this.buffer.compact();
+            if (this.channel.read(this.buffer) < 0) this.endOfFile = true;
+            this.buffer.flip();
+        }
+    }
+
+    private boolean isEmptyLine() {
+        for (int i = this.buffer.position(); i < this.buffer.limit(); i++) {
+            byte b = this.buffer.get(i);
+            if (b == '\n') return true;
+            if (b != ' ' && b != '\t' && b != '\r') return false;
+        }
+        return true;
+    }
+
+    private void skipLine() throws IOException {
+        if (!this.ensureLine()) return;
+        while (this.buffer.hasRemaining() && this.buffer.get() != '\n') ;
+    }
+
+    private void skipWhitespace() {
+        while (this.buffer.hasRemaining()) {
+            byte b = this.buffer.get(this.buffer.position());
+            if (b != ' ' && b != '\t' && b != '\r') return;
+            this.buffer.get();
+        }
+    }
+
+    /**
+     * Parse the next value of the current line, exactly like {@link Double#parseDouble(String)}. Numbers with at most
+     * 18 significant digits and a small exponent are converted without allocating.
+     */
+    private double parseValue(boolean first) throws IOException {
+        this.skipWhitespace();
+        if (!first) {
+            if (!this.buffer.hasRemaining() || this.buffer.get() != ',')
+                throw this.error("fewer than " + (this.inputSize + this.outputSize) + " values");
+            this.skipWhitespace();
+        }
+        int start = this.buffer.position();
+        int end = start;
+        while (end < this.buffer.limit()) {
+            byte b = this.buffer.get(end);
+            if (b == ',' || b == '\n' || b == '\r' || b == ' ' || b == '\t') break;
+            end++;
+        }
+        if (end == start) throw this.error("an empty value");
+        this.buffer.position(end);
+
+        int i = start;
+        boolean negative = false;
+        byte b = this.buffer.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean anyDigit = false, dot = false;
+        for (; i < end; i++) {
+            b = this.buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    if (dot) exponent--;
+                    continue;
+                }
+                if (++digits > 18) return this.parseSlow(start, end);
+                mantissa = mantissa * 10 + (b - '0');
+                if (dot) exponent--;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) return this.parseSlow(start, end);
+        if (i < end) {
+            if (b != 'e' && b != 'E') return this.parseSlow(start, end);
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) {
+                negativeExponent = this.buffer.get(i) == '-';
+                i++;
+            }
+            if (i == end) return this.parseSlow(start, end);
+            int explicit = 0;
+            for (; i < end; i++) {
+                b = this.buffer.get(i);
+                if (b < '0' || b > '9' || explicit > 10_000) return this.parseSlow(start, end);
+                explicit = explicit * 10 + (b - '0');
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+
+        // Exact when the mantissa and the power of ten are both exact doubles, one rounding in the multiplication
+        if (mantissa == 0) return negative ? -0.0 : 0.0;
+        if (mantissa >= 1L << 53 || exponent < -22 || exponent > 22) return this.parseSlow(start, end);
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private double parseSlow(int start, int end) throws IOException {
+        byte[] bytes = new byte[end - start];
+        this.buffer.get(start, bytes);
+        String value = new String(bytes, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw this.error("the value \"" + value + "\" that is not a number");
+        }
+    }
+
+    private IOException error(String problem) {
+        return new IOException(this.path + ": line " + (this.line + (this.header ? 1 : 0)) + " has " + problem + ".");
+    }
+}
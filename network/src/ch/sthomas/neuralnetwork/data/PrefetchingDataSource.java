@@ -0,0 +1,189 @@
+package ch.sthomas.neuralnetwork.data;
+
+import ch.sthomas.neuralnetwork.training.DataSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads another {@link DataSource} ahead on a background thread, so reading and parsing the next batch overlaps with
+ * training on the current one. The samples are read in blocks into a fixed number of reusable buffers, which are
+ * handed to the training thread in order and returned once they were consumed.
+ * <p>
+ * The underlying source is only used by the background thread while a pass is running and by the calling thread in
+ * {@link #rewind()}, so it does not need to be thread-safe.
+ */
+public class PrefetchingDataSource implements DataSource {
+    private final DataSource source;
+    private final int blockSize;
+    private final BlockingQueue<Block> free;
+    private final BlockingQueue<Block> filled;
+    private Thread reader;
+    private volatile boolean cancelled;
+
+    private Block current;
+    private int position;
+    private boolean ended;
+
+    /**
+     * Samples read by the background thread. A block with fewer samples than the block size ends the pass.
+     */
+    private static final class Block {
+        private final double[] inputs;
+        private final double[] expected;
+        private int size;
+        /**
+         * The exception the source threw while filling this block, which ends the pass
+         */
+        private Exception failure;
+
+        private Block(int blockSize, int inputSize, int outputSize) {
+            this.inputs = new double[blockSize * inputSize];
+            this.expected = new double[blockSize * outputSize];
+        }
+    }
+
+    /**
+     * Create a new prefetching source.
+     *
+     * @param source    the source to read ahead
+     * @param blockSize the number of samples read at a time, for example the batch size
+     * @param blocks    the number of blocks read ahead, at least 1
+     */
+    public PrefetchingDataSource(DataSource source, int blockSize, int blocks) {
+        if (blockSize < 1 || blocks < 1) throw new IllegalArgumentException("Block size and blocks must be at least 1.");
+        this.source = source;
+        this.blockSize = blockSize;
+        // One more block than read ahead for the block the training thread is consuming
+        this.free = new ArrayBlockingQueue<>(blocks + 1);
+        this.filled = new ArrayBlockingQueue<>(blocks + 1);
+        for (int i = 0; i <= blocks; i++) this.free.add(new Block(blockSize, source.getInputSize(), source.getOutputSize()));
+    }
+
+    @Override
+    public int getInputSize() {
+        return this.source.getInputSize();
+    }
+
+    @Override
+    public int getOutputSize() {
+        return this.source.getOutputSize();
+    }
+
+    @Override
+    public void rewind() throws IOException {
+        this.stop();
+        this.source.rewind();
+        this.start();
+    }
+
+    @Override
+    public boolean next(double[] input, double[] expected) throws IOException {
+        if (this.reader == null) this.start();
+        while (this.current == null || this.position == this.current.size) {
+            if (this.ended) return false;
+            if (this.current != null) this.free.add(this.current);
+            try {
+                this.current = this.filled.take();
+            } catch (InterruptedException e) {
+                this.current = null;
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the next samples.");
+            }
+            this.position = 0;
+            this.ended = this.current.size < this.blockSize;
+            if (this.current.failure != null) {
+                // The failure ends the pass, the samples read before it in this block are dropped
+                this.position = this.current.size;
+                this.ended = true;
+                if (this.current.failure instanceof IOException e) throw e;
+                throw new IOException("Reading the next samples failed.", this.current.failure);
+            }
+        }
+        int inputSize = input.length, outputSize = expected.length;
+        System.arraycopy(this.current.inputs, this.position * inputSize, input, 0, inputSize);
+        System.arraycopy(this.current.expected, this.position * outputSize, expected, 0, outputSize);
+        this.position++;
+        return true;
+    }
+
+    /**
+     * Stop the background thread and close the underlying source.
+     */
+    @Override
+    public void close() throws IOException {
+        this.stop();
+        this.source.close();
+    }
+
+    private void start() {
+        this.cancelled = false;
+        this.ended = false;
+        this.reader = new Thread(this::read, "prefetching-data-source");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Stop the pass of the background thread and return all blocks to the free ones. The thread is not interrupted, as
+     * that would close file channels of the underlying source, it stops after the sample it is reading.
+     */
+    private void stop() throws IOException {
+        if (this.reader != null) {
+            this.cancelled = true;
+            // Hand back all blocks, so the thread is not waiting for a free one
+            this.recycle();
+            try {
+                this.reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while stopping the prefetching thread.");
+            }
+            this.reader = null;
+        }
+        this.recycle();
+    }
+
+    private void recycle() {
+        if (this.current != null) this.free.add(this.current);
+        this.current = null;
+        this.position = 0;
+        Block block;
+        while ((block = this.filled.poll()) != null) this.free.add(block);
+    }
+
+    /**
+     * Read the current pass of the source into the free blocks until it ends or is cancelled.
+     */
+    private void read() {
+        int inputSize = this.source.getInputSize(), outputSize = this.source.getOutputSize();
+        double[] input = new double[inputSize], expected = new double[outputSize];
+        try {
+            while (!this.cancelled) {
+                Block block = this.free.take();
+                if (this.cancelled) {
+                    this.free.add(block);
+                    return;
+                }
+                block.size = 0;
+                block.failure = null;
+                try {
+                    while (block.size < this.blockSize && !this.cancelled && this.source.next(input, expected)) {
+                        System.arraycopy(input, 0, block.inputs, block.size * inputSize, inputSize);
+                        System.arraycopy(expected, 0, block.expected, block.size * outputSize, outputSize);
+                        block.size++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Hand every failure to the training thread, which would otherwise wait for this block forever
+                    block.failure = e;
+                }
+                this.filled.put(block);
+                if (block.size < this.blockSize || block.failure != null) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
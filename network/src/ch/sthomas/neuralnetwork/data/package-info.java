@@ -0,0 +1,5 @@
+/**
+ * {@link ch.sthomas.neuralnetwork.training.DataSource}s streaming training samples from files too large to be held in
+ * memory, and a decorator reading ahead on a background thread.
+ */
+package ch.sthomas.neuralnetwork.data;
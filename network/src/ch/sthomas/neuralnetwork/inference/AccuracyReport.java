@@ -0,0 +1,39 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import ch.sthomas.neuralnetwork.Network;
+
+/**
+ * How far the outputs of an {@link InferenceModel} deviate from the outputs of the network it was created from.
+ *
+ * @param samples              the number of samples compared
+ * @param maxAbsoluteError     the largest absolute difference of a single output value
+ * @param meanAbsoluteError    the average absolute difference of all output values
+ * @param rootMeanSquaredError the root of the average squared difference of all output values
+ */
+public record AccuracyReport(int samples, double maxAbsoluteError, double meanAbsoluteError, double rootMeanSquaredError) {
+    /**
+     * Compare the outputs of a model with the outputs of the reference network.
+     *
+     * @param reference the network calculated in double precision
+     * @param model     the model to compare
+     * @param samples   the inputs to compare the outputs for
+     * @return the deviation of the model
+     */
+    public static AccuracyReport compare(Network reference, InferenceModel model, double[][] samples) {
+        double max = 0.0, sum = 0.0, squares = 0.0;
+        long values = 0;
+        double[] actual = new double[model.getNrOfOutputs()];
+        for (double[] sample : samples) {
+            double[] expected = reference.calculateOutputs(sample);
+            model.calculateOutputs(sample, actual);
+            for (int j = 0; j < expected.length; j++) {
+                double error = Math.abs(actual[j] - expected[j]);
+                max = Math.max(max, error);
+                sum += error;
+                squares += error * error;
+            }
+            values += expected.length;
+        }
+        return new AccuracyReport(samples.length, max, values > 0 ? sum / values : 0.0, values > 0 ? Math.sqrt(squares / values) : 0.0);
+    }
+}
@@ -0,0 +1,139 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import ch.sthomas.neuralnetwork.Network;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single inference requests of many threads into micro-batches for one shared {@link Network}. A background
+ * thread waits for the first request, then gathers further requests until the batch is full or the first request has
+ * waited for the maximum latency, and calculates the whole batch with
+ * {@link Network#calculateOutputs(double[], int, double[])}.
+ */
+public class BatchingInference implements AutoCloseable {
+    private final Network network;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean closed;
+
+    private record Request(double[] inputs, CompletableFuture<double[]> result, long arrival) {
+    }
+
+    /**
+     * Create a new BatchingInference and start its background thread.
+     *
+     * @param network      the network to calculate the outputs with, must not be trained at the same time
+     * @param maxBatchSize the maximum number of requests calculated at once
+     * @param maxLatency   the maximum time a request waits for further requests to join its batch
+     */
+    public BatchingInference(Network network, int maxBatchSize, Duration maxLatency) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1.");
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.worker = new Thread(this::run, "batching-inference");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queue the inputs to be calculated with the next batch.
+     *
+     * @param inputs the inputs to the first layer, not copied, so they must not be changed until the result is done
+     * @return the values the output layer produced, completed exceptionally if this was closed before
+     */
+    public CompletableFuture<double[]> submit(double[] inputs) {
+        if (inputs.length != this.network.getNrOfInputs())
+            throw new IllegalArgumentException("Inputs must be of the length of the network's inputs.");
+        CompletableFuture<double[]> result = new CompletableFuture<>();
+        if (this.closed) {
+            result.completeExceptionally(new IllegalStateException("Batching inference is closed."));
+            return result;
+        }
+        Request request = new Request(inputs, result, System.nanoTime());
+        this.queue.add(request);
+        // Closed while adding, the request may have missed the final drain of close()
+        if (this.closed && this.queue.remove(request)) {
+            result.completeExceptionally(new IllegalStateException("Batching inference is closed."));
+        }
+        return result;
+    }
+
+    /**
+     * Calculate the output values for the given inputs with the next batch, waiting for the result.
+     *
+     * @param inputs the inputs to the first layer
+     * @return the values the output layer produced
+     * @see #submit(double[])
+     */
+    public double[] calculateOutputs(double[] inputs) {
+        return this.submit(inputs).join();
+    }
+
+    /**
+     * Stop the background thread. Requests that were not calculated yet are completed exceptionally.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.worker.interrupt();
+        try {
+            this.worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request request;
+        while ((request = this.queue.poll()) != null) {
+            request.result().completeExceptionally(new IllegalStateException("Batching inference is closed."));
+        }
+    }
+
+    private void run() {
+        int nrOfInputs = this.network.getNrOfInputs();
+        int nrOfOutputs = this.network.getLayers()[this.network.getLayers().length - 1].getOutputs();
+        Request[] batch = new Request[this.maxBatchSize];
+        double[] inputs = new double[this.maxBatchSize * nrOfInputs];
+        double[] outputs = new double[this.maxBatchSize * nrOfOutputs];
+
+        while (!this.closed) {
+            int size = 0;
+            try {
+                Request first = this.queue.take();
+                batch[size++] = first;
+                long deadline = first.arrival() + this.maxLatencyNanos;
+                while (size < this.maxBatchSize) {
+                    Request next = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch[size++] = next;
+                }
+            } catch (InterruptedException e) {
+                if (this.closed) {
+                    for (int i = 0; i < size; i++) this.queue.add(batch[i]);
+                    return;
+                }
+                // Interrupted while open, calculate what was gathered so far
+                if (size == 0) continue;
+            }
+
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(batch[i].inputs(), 0, inputs, i * nrOfInputs, nrOfInputs);
+            }
+            try {
+                this.network.calculateOutputs(inputs, size, outputs);
+                for (int i = 0; i < size; i++) {
+                    batch[i].result().complete(Arrays.copyOfRange(outputs, i * nrOfOutputs, (i + 1) * nrOfOutputs));
+                }
+            } catch (RuntimeException e) {
+                for (int i = 0; i < size; i++) batch[i].result().completeExceptionally(e);
+            }
+            Arrays.fill(batch, 0, size, null);
+        }
+    }
+}
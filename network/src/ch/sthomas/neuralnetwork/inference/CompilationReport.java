@@ -0,0 +1,31 @@
+package ch.sthomas.neuralnetwork.inference;
+
+/**
+ * What {@link InferenceCompiler} removed from a network. The floating point operations count one multiplication and
+ * one addition per weight of a forward pass.
+ *
+ * @param originalFlops   the floating point operations of one forward pass of the network
+ * @param compiledFlops   the floating point operations of one forward pass of the plan
+ * @param foldedLayers    the number of layers merged into the following layer
+ * @param constantNeurons the number of Neurons without inputs folded into the biases of the following layer
+ * @param prunedNeurons   the number of Neurons removed because all their outgoing weights were below the threshold
+ * @param prunedInputs    the number of network inputs ignored because all their weights were below the threshold
+ * @param sparseStages    the number of stages stored in compressed sparse row format, which only count their
+ *                        weights above the threshold
+ */
+public record CompilationReport(long originalFlops, long compiledFlops, int foldedLayers, int constantNeurons,
+                                int prunedNeurons, int prunedInputs, int sparseStages) {
+    /**
+     * @return the floating point operations saved per forward pass
+     */
+    public long savedFlops() {
+        return this.originalFlops - this.compiledFlops;
+    }
+
+    /**
+     * @return the fraction of the floating point operations saved, from 0 to 1
+     */
+    public double savedFraction() {
+        return this.originalFlops > 0 ? (double) this.savedFlops() / this.originalFlops : 0.0;
+    }
+}
@@ -0,0 +1,98 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import ch.sthomas.neuralnetwork.Activation;
+import ch.sthomas.neuralnetwork.kernel.CsrMatrix;
+import ch.sthomas.neuralnetwork.kernel.Kernels;
+
+/**
+ * A network compiled for inference by {@link InferenceCompiler}. Every stage calculates one layer in a single pass,
+ * the matrix-vector product with the bias added in the kernel, followed by the activation function applied in place
+ * while the result is still in cache. Stages with mostly pruned weights use a {@link CsrMatrix} instead of the dense
+ * kernel. An execution plan is never changed after it was compiled and can be used by any
+ * number of threads.
+ */
+public final class ExecutionPlan implements InferenceModel {
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final int nrOfInputs;
+    /**
+     * The network inputs the first stage reads, in order, or null if it reads all of them
+     */
+    private final int[] inputIndices;
+    private final int[] inputs;
+    private final int[] outputs;
+    private final double[][] weights;
+    /**
+     * The weights of every stage in compressed sparse row format, or null for stages calculated dense
+     */
+    private final CsrMatrix[] sparseWeights;
+    private final double[][] biases;
+    private final Activation[] activations;
+    private final CompilationReport report;
+    private final ThreadLocal<double[][]> workspaces;
+
+    ExecutionPlan(int nrOfInputs, int[] inputIndices, int[] inputs, int[] outputs, double[][] weights,
+                  CsrMatrix[] sparseWeights, double[][] biases, Activation[] activations, CompilationReport report) {
+        this.nrOfInputs = nrOfInputs;
+        this.inputIndices = inputIndices;
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.weights = weights;
+        this.sparseWeights = sparseWeights;
+        this.biases = biases;
+        this.activations = activations;
+        this.report = report;
+        int width = inputIndices != null ? inputIndices.length : 0;
+        for (int output : outputs) width = Math.max(width, output);
+        int maxWidth = width;
+        this.workspaces = ThreadLocal.withInitial(() -> new double[2][maxWidth]);
+    }
+
+    /**
+     * @return what the compiler removed and the floating point operations saved
+     */
+    public CompilationReport getReport() {
+        return this.report;
+    }
+
+    /**
+     * @return the number of stages, one per layer left after folding
+     */
+    public int getStages() {
+        return this.weights.length;
+    }
+
+    @Override
+    public int getNrOfInputs() {
+        return this.nrOfInputs;
+    }
+
+    @Override
+    public int getNrOfOutputs() {
+        return this.outputs[this.outputs.length - 1];
+    }
+
+    @Override
+    public void calculateOutputs(double[] inputs, double[] outputs) {
+        if (inputs.length < this.nrOfInputs)
+            throw new IllegalArgumentException("Inputs must be of the length of the network's inputs.");
+        double[][] workspace = this.workspaces.get();
+        double[] x = inputs;
+        int buffer = 0;
+        if (this.inputIndices != null) {
+            x = workspace[buffer];
+            for (int i = 0; i < this.inputIndices.length; i++) x[i] = inputs[this.inputIndices[i]];
+            buffer ^= 1;
+        }
+
+        int last = this.weights.length - 1;
+        for (int s = 0; s <= last; s++) {
+            double[] y = s == last ? outputs : workspace[buffer];
+            if (this.sparseWeights[s] != null) this.sparseWeights[s].gemv(x, this.biases[s], y);
+            else KERNELS.gemv(this.weights[s], this.outputs[s], this.inputs[s], x, this.biases[s], y);
+            this.activations[s].forward(y, y, 0, this.outputs[s]);
+            x = y;
+            buffer ^= 1;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import ch.sthomas.neuralnetwork.Activation;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.kernel.Kernels;
+
+/**
+ * A copy of a trained {@link Network} calculated in single precision. The weights take half the memory of the
+ * network's, so half the bytes are streamed from memory per inference.
+ *
+ * @see AccuracyReport
+ */
+public class FloatNetwork implements InferenceModel {
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final int[] inputs;
+    private final int[] outputs;
+    private final float[][] weights;
+    private final float[][] biases;
+    private final Activation[] activations;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * The buffers of one thread, the layer's inputs and values of z in single precision and a double precision copy
+     * of z the activation function is applied to.
+     */
+    private static final class Workspace {
+        private final float[] x;
+        private final float[] z;
+        private final double[] a;
+
+        private Workspace(int width) {
+            this.x = new float[width];
+            this.z = new float[width];
+            this.a = new double[width];
+        }
+    }
+
+    /**
+     * Copy the weights and biases of a network, rounded to single precision.
+     *
+     * @param network the network to copy
+     */
+    public FloatNetwork(Network network) {
+        Layer[] layers = network.getLayers();
+        this.inputs = new int[layers.length];
+        this.outputs = new int[layers.length];
+        this.weights = new float[layers.length][];
+        this.biases = new float[layers.length][];
+        this.activations = new Activation[layers.length];
+        int width = 0;
+        for (int l = 0; l < layers.length; l++) {
+            this.inputs[l] = layers[l].getInputs();
+            this.outputs[l] = layers[l].getOutputs();
+            this.weights[l] = toFloats(layers[l].getWeights());
+            this.biases[l] = toFloats(layers[l].getBiases());
+            this.activations[l] = layers[l].getActivation();
+            width = Math.max(width, Math.max(this.inputs[l], this.outputs[l]));
+        }
+        int maxWidth = width;
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(maxWidth));
+    }
+
+    @Override
+    public int getNrOfInputs() {
+        return this.inputs[0];
+    }
+
+    @Override
+    public int getNrOfOutputs() {
+        return this.outputs[this.outputs.length - 1];
+    }
+
+    /**
+     * @return the number of bytes of the weights and biases
+     */
+    public long getParameterBytes() {
+        long values = 0;
+        for (int l = 0; l < this.weights.length; l++) values += this.weights[l].length + this.biases[l].length;
+        return values * Float.BYTES;
+    }
+
+    @Override
+    public void calculateOutputs(double[] inputs, double[] outputs) {
+        Workspace workspace = this.workspaces.get();
+        for (int i = 0; i < this.inputs[0]; i++) workspace.x[i] = (float) inputs[i];
+
+        int last = this.weights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            KERNELS.gemv(this.weights[l], this.outputs[l], this.inputs[l], workspace.x, this.biases[l], workspace.z);
+            for (int j = 0; j < this.outputs[l]; j++) workspace.a[j] = workspace.z[j];
+            this.activations[l].forward(workspace.a, workspace.a, 0, this.outputs[l]);
+            if (l == last) {
+                System.arraycopy(workspace.a, 0, outputs, 0, this.outputs[l]);
+            } else {
+                for (int j = 0; j < this.outputs[l]; j++) workspace.x[j] = (float) workspace.a[j];
+            }
+        }
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) result[i] = (float) values[i];
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import ch.sthomas.neuralnetwork.Activation;
+import ch.sthomas.neuralnetwork.ActivationType;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.kernel.CsrMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles a trained {@link Network} into an {@link ExecutionPlan} doing less work per forward pass:
+ * <ul>
+ *     <li>Neurons without any incoming weight produce the same activation for every input, they are removed and their
+ *     contribution is added to the biases of the following layer.</li>
+ *     <li>Neurons whose outgoing weights are all at most the pruning threshold in magnitude are removed, from the last
+ *     hidden layer to the first, and so are network inputs whose weights all are.</li>
+ *     <li>A layer with the {@link ActivationType#LINEAR} activation function is multiplied into the following layer
+ *     if the product has fewer weights than the two layers.</li>
+ *     <li>Layers in which at most the sparse density of the weights are above the threshold in magnitude are stored
+ *     as a {@link CsrMatrix}, dropping the other weights. Disabled by default.</li>
+ * </ul>
+ * With the default threshold of 0 only weights that are exactly 0 are pruned, and the outputs of the plan equal the
+ * outputs of the network up to rounding. A positive threshold trades accuracy for speed, use
+ * {@link AccuracyReport#compare(Network, InferenceModel, double[][])} to check the deviation.
+ */
+public class InferenceCompiler {
+    private double pruningThreshold = 0.0;
+    private boolean foldLinearLayers = true;
+    private double sparseDensity = 0.0;
+
+    /**
+     * A layer while it is being compiled.
+     */
+    private static final class Stage {
+        private int inputs;
+        private int outputs;
+        private double[] weights;
+        private double[] biases;
+        private final Activation activation;
+
+        private Stage(int inputs, int outputs, double[] weights, double[] biases, Activation activation) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.weights = weights;
+            this.biases = biases;
+            this.activation = activation;
+        }
+
+        private long flops() {
+            return 2L * this.inputs * this.outputs;
+        }
+
+        /**
+         * Remove the Neurons (rows) that are not kept.
+         */
+        private void keepOutputs(boolean[] keep, int kept) {
+            double[] weights = new double[kept * this.inputs];
+            double[] biases = new double[kept];
+            for (int j = 0, k = 0; j < this.outputs; j++) {
+                if (!keep[j]) continue;
+                System.arraycopy(this.weights, j * this.inputs, weights, k * this.inputs, this.inputs);
+                biases[k++] = this.biases[j];
+            }
+            this.outputs = kept;
+            this.weights = weights;
+            this.biases = biases;
+        }
+
+        /**
+         * Remove the inputs (columns) that are not kept.
+         */
+        private void keepInputs(boolean[] keep, int kept) {
+            double[] weights = new double[this.outputs * kept];
+            for (int j = 0; j < this.outputs; j++) {
+                for (int i = 0, k = 0; i < this.inputs; i++) {
+                    if (keep[i]) weights[j * kept + k++] = this.weights[j * this.inputs + i];
+                }
+            }
+            this.inputs = kept;
+            this.weights = weights;
+        }
+    }
+
+    /**
+     * Set the magnitude up to which weights count as 0 when pruning Neurons and inputs.
+     *
+     * @param pruningThreshold the threshold, 0 to only prune weights that are exactly 0
+     */
+    public void setPruningThreshold(double pruningThreshold) {
+        if (pruningThreshold < 0) throw new IllegalArgumentException("Pruning threshold must not be negative.");
+        this.pruningThreshold = pruningThreshold;
+    }
+
+    /**
+     * @param foldLinearLayers true to multiply layers with the linear activation function into the following layer
+     */
+    public void setFoldLinearLayers(boolean foldLinearLayers) {
+        this.foldLinearLayers = foldLinearLayers;
+    }
+
+    /**
+     * Set the fraction of weights above the pruning threshold up to which a layer is stored in compressed sparse row
+     * format. The sparse product is scalar, so it only pays off well below the width of the SIMD kernels, around a
+     * density of 0.1.
+     *
+     * @param sparseDensity the density from 0 to 1, 0 to store all layers dense
+     */
+    public void setSparseDensity(double sparseDensity) {
+        if (sparseDensity < 0 || sparseDensity > 1)
+            throw new IllegalArgumentException("Sparse density must be between 0 and 1.");
+        this.sparseDensity = sparseDensity;
+    }
+
+    /**
+     * Compile a network. The network is copied and can be changed afterwards without changing the plan.
+     *
+     * @param network the network to compile
+     * @return the execution plan
+     */
+    public ExecutionPlan compile(Network network) {
+        List<Stage> stages = new ArrayList<>();
+        long originalFlops = 0;
+        for (Layer layer : network.getLayers()) {
+            Stage stage = new Stage(layer.getInputs(), layer.getOutputs(), layer.getWeights().clone(),
+                    layer.getBiases().clone(), layer.getActivation());
+            stages.add(stage);
+            originalFlops += stage.flops();
+        }
+
+        int constantNeurons = this.foldConstantNeurons(stages);
+        int prunedNeurons = this.pruneNeurons(stages);
+        int[] inputIndices = this.pruneInputs(stages.get(0), network.getNrOfInputs());
+        int prunedInputs = inputIndices != null ? network.getNrOfInputs() - inputIndices.length : 0;
+        int foldedLayers = this.foldLinearLayers ? foldLinearLayers(stages) : 0;
+
+        int count = stages.size();
+        int[] inputs = new int[count], outputs = new int[count];
+        double[][] weights = new double[count][], biases = new double[count][];
+        CsrMatrix[] sparseWeights = new CsrMatrix[count];
+        Activation[] activations = new Activation[count];
+        long compiledFlops = 0;
+        int sparseStages = 0;
+        for (int s = 0; s < count; s++) {
+            Stage stage = stages.get(s);
+            inputs[s] = stage.inputs;
+            outputs[s] = stage.outputs;
+            biases[s] = stage.biases;
+            activations[s] = stage.activation;
+            int size = stage.inputs * stage.outputs;
+            int nonZeros = CsrMatrix.countNonZeros(stage.weights, size, this.pruningThreshold);
+            if (size > 0 && nonZeros <= this.sparseDensity * size) {
+                sparseWeights[s] = CsrMatrix.of(stage.weights, stage.outputs, stage.inputs, this.pruningThreshold);
+                compiledFlops += 2L * nonZeros;
+                sparseStages++;
+            } else {
+                weights[s] = stage.weights;
+                compiledFlops += stage.flops();
+            }
+        }
+        CompilationReport report = new CompilationReport(originalFlops, compiledFlops, foldedLayers, constantNeurons,
+                prunedNeurons, prunedInputs, sparseStages);
+        return new ExecutionPlan(network.getNrOfInputs(), inputIndices, inputs, outputs, weights, sparseWeights, biases,
+                activations, report);
+    }
+
+    /**
+     * Remove the hidden Neurons whose incoming weights are all 0 and add their constant contribution to the biases of
+     * the following layer. A layer of only such Neurons is removed, the following layer then reads the layer's inputs
+     * with weights of 0.
+     *
+     * @return the number of Neurons removed
+     */
+    private int foldConstantNeurons(List<Stage> stages) {
+        int removed = 0;
+        for (int l = 0; l < stages.size() - 1; l++) {
+            Stage stage = stages.get(l), next = stages.get(l + 1);
+            if (!isElementwise(stage.activation)) continue;
+            ActivationType activation = (ActivationType) stage.activation;
+            boolean[] keep = new boolean[stage.outputs];
+            int kept = 0;
+            for (int j = 0; j < stage.outputs; j++) {
+                keep[j] = !allZero(stage.weights, j * stage.inputs, 1, stage.inputs, 0.0);
+                if (keep[j]) kept++;
+            }
+            if (kept == stage.outputs) continue;
+
+            for (int j = 0; j < stage.outputs; j++) {
+                if (keep[j]) continue;
+                double constant = activation.activate(stage.biases[j]);
+                for (int k = 0; k < next.outputs; k++) next.biases[k] += next.weights[k * next.inputs + j] * constant;
+            }
+            removed += stage.outputs - kept;
+            if (kept > 0) {
+                stage.keepOutputs(keep, kept);
+                next.keepInputs(keep, kept);
+            } else {
+                next.inputs = stage.inputs;
+                next.weights = new double[next.outputs * stage.inputs];
+                stages.remove(l--);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove the hidden Neurons whose outgoing weights are all at most the threshold, from the last hidden layer to
+     * the first, so Neurons only feeding removed Neurons are removed as well.
+     *
+     * @return the number of Neurons removed
+     */
+    private int pruneNeurons(List<Stage> stages) {
+        int removed = 0;
+        for (int l = stages.size() - 2; l >= 0; l--) {
+            Stage stage = stages.get(l), next = stages.get(l + 1);
+            if (!isElementwise(stage.activation)) continue;
+            boolean[] keep = new boolean[stage.outputs];
+            int kept = 0;
+            for (int j = 0; j < stage.outputs; j++) {
+                keep[j] = !allZero(next.weights, j, next.inputs, next.outputs, this.pruningThreshold);
+                if (keep[j]) kept++;
+            }
+            if (kept < stage.outputs && kept > 0) {
+                stage.keepOutputs(keep, kept);
+                next.keepInputs(keep, kept);
+                removed += keep.length - kept;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove the network inputs whose weights are all at most the threshold from the first layer.
+     *
+     * @return the indices of the inputs the first stage reads, or null if it reads all of them
+     */
+    private int[] pruneInputs(Stage first, int nrOfInputs) {
+        boolean[] keep = new boolean[first.inputs];
+        int kept = 0;
+        for (int i = 0; i < first.inputs; i++) {
+            keep[i] = !allZero(first.weights, i, first.inputs, first.outputs, this.pruningThreshold);
+            if (keep[i]) kept++;
+        }
+        if (kept == nrOfInputs || kept == 0) return null;
+        int[] indices = new int[kept];
+        for (int i = 0, k = 0; i < keep.length; i++) if (keep[i]) indices[k++] = i;
+        first.keepInputs(keep, kept);
+        return indices;
+    }
+
+    /**
+     * Multiply layers with the linear activation function into the following layer where that saves work, W = W2 * W1
+     * and b = W2 * b1 + b2.
+     *
+     * @return the number of layers folded
+     */
+    private static int foldLinearLayers(List<Stage> stages) {
+        int folded = 0;
+        for (int l = 0; l < stages.size() - 1; ) {
+            Stage first = stages.get(l), second = stages.get(l + 1);
+            long merged = 2L * first.inputs * second.outputs;
+            if (first.activation != ActivationType.LINEAR || merged > first.flops() + second.flops()) {
+                l++;
+                continue;
+            }
+            int rows = second.outputs, columns = first.inputs, inner = first.outputs;
+            double[] weights = new double[rows * columns];
+            double[] biases = second.biases.clone();
+            for (int j = 0; j < rows; j++) {
+                for (int k = 0; k < inner; k++) {
+                    double w = second.weights[j * inner + k];
+                    if (w == 0.0) continue;
+                    for (int i = 0; i < columns; i++) weights[j * columns + i] += w * first.weights[k * columns + i];
+                    biases[j] += w * first.biases[k];
+                }
+            }
+            stages.set(l, new Stage(columns, rows, weights, biases, second.activation));
+            stages.remove(l + 1);
+            folded++;
+        }
+        return folded;
+    }
+
+    private static boolean isElementwise(Activation activation) {
+        return activation instanceof ActivationType type && type != ActivationType.SOFTMAX;
+    }
+
+    /**
+     * @return true if the {@code count} values starting at {@code offset}, {@code stride} apart, are all at most the
+     * threshold in magnitude
+     */
+    private static boolean allZero(double[] values, int offset, int stride, int count, double threshold) {
+        for (int k = 0, i = offset; k < count; k++, i += stride) {
+            if (Math.abs(values[i]) > threshold) return false;
+        }
+        return true;
+    }
+}
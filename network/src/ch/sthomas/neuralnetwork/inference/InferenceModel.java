@@ -0,0 +1,37 @@
+package ch.sthomas.neuralnetwork.inference;
+
+/**
+ * A read-only model calculating the outputs of a trained network, for example with a lower precision.
+ */
+public interface InferenceModel {
+    /**
+     * @return the number of inputs of the model
+     */
+    int getNrOfInputs();
+
+    /**
+     * @return the number of outputs of the model
+     */
+    int getNrOfOutputs();
+
+    /**
+     * Calculate the output values for the given inputs.
+     *
+     * @param inputs  the inputs to the first layer
+     * @param outputs the array to write the values the output layer produced to, at least of length
+     *                {@link #getNrOfOutputs()}
+     */
+    void calculateOutputs(double[] inputs, double[] outputs);
+
+    /**
+     * Calculate the output values for the given inputs.
+     *
+     * @param inputs the inputs to the first layer
+     * @return the values the output layer produced
+     */
+    default double[] calculateOutputs(double[] inputs) {
+        double[] outputs = new double[this.getNrOfOutputs()];
+        this.calculateOutputs(inputs, outputs);
+        return outputs;
+    }
+}
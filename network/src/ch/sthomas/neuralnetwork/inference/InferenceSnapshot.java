@@ -0,0 +1,121 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import ch.sthomas.neuralnetwork.Activation;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.kernel.Kernels;
+
+/**
+ * An immutable copy of the weights, biases and activation functions of a {@link Network}. A snapshot is never changed
+ * after it was created and keeps no state per thread, so any number of threads, including virtual threads, can
+ * calculate outputs with it at the same time without locks, while the network it was copied from continues to be
+ * trained.
+ *
+ * @see SnapshotHolder
+ */
+public final class InferenceSnapshot implements InferenceModel {
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final int[] inputs;
+    private final int[] outputs;
+    private final double[][] weights;
+    private final double[][] biases;
+    private final Activation[] activations;
+    private final int width;
+
+    private InferenceSnapshot(Network network) {
+        Layer[] layers = network.getLayers();
+        this.inputs = new int[layers.length];
+        this.outputs = new int[layers.length];
+        this.weights = new double[layers.length][];
+        this.biases = new double[layers.length][];
+        this.activations = new Activation[layers.length];
+        int width = 0;
+        for (int l = 0; l < layers.length; l++) {
+            this.inputs[l] = layers[l].getInputs();
+            this.outputs[l] = layers[l].getOutputs();
+            this.weights[l] = layers[l].getWeights().clone();
+            this.biases[l] = layers[l].getBiases().clone();
+            this.activations[l] = layers[l].getActivation();
+            width = Math.max(width, this.outputs[l]);
+        }
+        this.width = width;
+    }
+
+    /**
+     * Copy a network into a new snapshot. The network must not be updated while it is copied, for example take the
+     * snapshot between two calls of {@link ch.sthomas.neuralnetwork.training.Trainer#train}.
+     *
+     * @param network the network to copy
+     * @return the snapshot
+     */
+    public static InferenceSnapshot of(Network network) {
+        return new InferenceSnapshot(network);
+    }
+
+    @Override
+    public int getNrOfInputs() {
+        return this.inputs[0];
+    }
+
+    @Override
+    public int getNrOfOutputs() {
+        return this.outputs[this.outputs.length - 1];
+    }
+
+    /**
+     * @return a new workspace for {@link #calculateOutputs(double[], double[], double[][])}, two buffers of the width
+     * of the widest layer
+     */
+    public double[][] newWorkspace() {
+        return new double[2][this.width];
+    }
+
+    /**
+     * @param workspace a workspace created by this or another snapshot
+     * @return true if the workspace is large enough for this snapshot
+     */
+    public boolean fits(double[][] workspace) {
+        return workspace.length >= 2 && workspace[0].length >= this.width && workspace[1].length >= this.width;
+    }
+
+    /**
+     * Calculate the output values for the given inputs, allocating a workspace for the intermediate layers.
+     *
+     * @param inputs  the inputs to the first layer
+     * @param outputs the array to write the values the output layer produced to
+     * @see SnapshotHolder#calculateOutputs(double[], double[])
+     */
+    @Override
+    public void calculateOutputs(double[] inputs, double[] outputs) {
+        this.calculateOutputs(inputs, outputs, this.newWorkspace());
+    }
+
+    /**
+     * Calculate the output values for the given inputs without allocating. Every layer is calculated with one
+     * matrix-vector product, like {@link Layer#forward(double[], double[])}.
+     *
+     * @param inputs    the inputs to the first layer
+     * @param outputs   the array to write the values the output layer produced to
+     * @param workspace a workspace owned by the calling thread, see {@link #newWorkspace()}
+     */
+    public void calculateOutputs(double[] inputs, double[] outputs, double[][] workspace) {
+        if (inputs.length < this.inputs[0])
+            throw new IllegalArgumentException("Inputs must be of the length of the snapshot's inputs.");
+        if (!this.fits(workspace)) {
+            throw new IllegalArgumentException(
+                    "Workspace must have two buffers of at least " + this.width + " values.");
+        }
+
+        // The layers alternate between the two buffers of the workspace, the last one writes to the outputs
+        double[] x = inputs;
+        int last = this.weights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            int rows = this.outputs[l];
+            double[] y = l == last ? outputs : workspace[l & 1];
+            KERNELS.gemv(this.weights[l], rows, this.inputs[l], x, this.biases[l], y);
+            this.activations[l].forward(y, y, 0, rows);
+            x = y;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import ch.sthomas.neuralnetwork.Activation;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+
+import java.util.Arrays;
+
+/**
+ * A copy of a trained {@link Network} with 8-bit integer weights, taking an eighth of the memory of the network's
+ * weights.
+ * <p>
+ * The weights of every layer are quantized symmetrically, w = weightScale * q. The inputs of every layer are
+ * quantized with a scale and a zero-point, x = inputScale * (q - zeroPoint), chosen from the range of the values the
+ * layer received during a calibration pass over sample inputs. The products are summed as integers, then the sum is
+ * scaled back, the bias is added and the activation function is applied in double precision. The products of a row
+ * are summed as ints while that cannot overflow, for layers of more than {@link #MAX_INT_COLUMNS} inputs as longs.
+ *
+ * @see #calibrate(Network, double[][])
+ * @see AccuracyReport
+ */
+public class QuantizedNetwork implements InferenceModel {
+    /**
+     * The most inputs of a layer whose sums of int8 products fit into an int, one product is at most 127 * 128
+     */
+    static final int MAX_INT_COLUMNS = Integer.MAX_VALUE / (127 * 128);
+
+    private final int[] inputs;
+    private final int[] outputs;
+    private final byte[][] weights;
+    /**
+     * The sum of the quantized weights of every row, to subtract the zero-point of the inputs once per row
+     */
+    private final long[][] rowSums;
+    private final double[] weightScales;
+    private final double[] inputScales;
+    private final int[] inputZeroPoints;
+    private final double[][] biases;
+    private final Activation[] activations;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * The buffers of one thread, the quantized inputs of a layer and its activations.
+     */
+    private static final class Workspace {
+        private final byte[] x;
+        private final double[] a;
+
+        private Workspace(int width) {
+            this.x = new byte[width];
+            this.a = new double[width];
+        }
+    }
+
+    private QuantizedNetwork(Layer[] layers, double[] minimums, double[] maximums) {
+        this.inputs = new int[layers.length];
+        this.outputs = new int[layers.length];
+        this.weights = new byte[layers.length][];
+        this.rowSums = new long[layers.length][];
+        this.weightScales = new double[layers.length];
+        this.inputScales = new double[layers.length];
+        this.inputZeroPoints = new int[layers.length];
+        this.biases = new double[layers.length][];
+        this.activations = new Activation[layers.length];
+
+        int width = 0;
+        for (int l = 0; l < layers.length; l++) {
+            Layer layer = layers[l];
+            this.inputs[l] = layer.getInputs();
+            this.outputs[l] = layer.getOutputs();
+            this.biases[l] = layer.getBiases().clone();
+            this.activations[l] = layer.getActivation();
+            width = Math.max(width, Math.max(this.inputs[l], this.outputs[l]));
+
+            // Symmetric weights, the largest absolute weight is mapped to 127
+            double[] w = layer.getWeights();
+            double maxAbs = 0.0;
+            for (double value : w) maxAbs = Math.max(maxAbs, Math.abs(value));
+            this.weightScales[l] = maxAbs > 0 ? maxAbs / 127 : 1.0;
+            this.weights[l] = new byte[w.length];
+            this.rowSums[l] = new long[this.outputs[l]];
+            for (int j = 0, row = 0; j < this.outputs[l]; j++, row += this.inputs[l]) {
+                long sum = 0;
+                for (int i = 0; i < this.inputs[l]; i++) {
+                    byte q = (byte) clamp(Math.round(w[row + i] / this.weightScales[l]));
+                    this.weights[l][row + i] = q;
+                    sum += q;
+                }
+                this.rowSums[l][j] = sum;
+            }
+
+            // Asymmetric inputs, the calibrated range including 0 is mapped to -128..127
+            double min = Math.min(0.0, minimums[l]), max = Math.max(0.0, maximums[l]);
+            this.inputScales[l] = max > min ? (max - min) / 255 : 1.0;
+            this.inputZeroPoints[l] = clamp(Math.round(-128 - min / this.inputScales[l]));
+        }
+        int maxWidth = width;
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(maxWidth));
+    }
+
+    /**
+     * Quantize a network, choosing the scale and zero-point of every layer's inputs from the range of values the layer
+     * receives for the sample inputs.
+     *
+     * @param network the network to quantize
+     * @param samples representative inputs of the network
+     * @return the quantized network
+     */
+    public static QuantizedNetwork calibrate(Network network, double[][] samples) {
+        Layer[] layers = network.getLayers();
+        double[] minimums = new double[layers.length];
+        double[] maximums = new double[layers.length];
+        Arrays.fill(minimums, Double.POSITIVE_INFINITY);
+        Arrays.fill(maximums, Double.NEGATIVE_INFINITY);
+        for (double[] sample : samples) {
+            double[][] activations = network.calculateAllNeuronActivations(sample);
+            for (int l = 0; l < layers.length; l++) {
+                double[] layerInputs = l == 0 ? sample : activations[l - 1];
+                for (int i = 0; i < layers[l].getInputs(); i++) {
+                    minimums[l] = Math.min(minimums[l], layerInputs[i]);
+                    maximums[l] = Math.max(maximums[l], layerInputs[i]);
+                }
+            }
+        }
+        return new QuantizedNetwork(layers, minimums, maximums);
+    }
+
+    @Override
+    public int getNrOfInputs() {
+        return this.inputs[0];
+    }
+
+    @Override
+    public int getNrOfOutputs() {
+        return this.outputs[this.outputs.length - 1];
+    }
+
+    /**
+     * @return the number of bytes of the quantized weights and the biases
+     */
+    public long getParameterBytes() {
+        long bytes = 0;
+        for (int l = 0; l < this.weights.length; l++) bytes += this.weights[l].length + (long) this.biases[l].length * Double.BYTES;
+        return bytes;
+    }
+
+    @Override
+    public void calculateOutputs(double[] inputs, double[] outputs) {
+        Workspace workspace = this.workspaces.get();
+        double[] x = inputs;
+        int last = this.weights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            int columns = this.inputs[l];
+            double inverseScale = 1 / this.inputScales[l];
+            int zeroPoint = this.inputZeroPoints[l];
+            for (int i = 0; i < columns; i++) {
+                workspace.x[i] = (byte) clamp(Math.round(x[i] * inverseScale) + zeroPoint);
+            }
+
+            byte[] w = this.weights[l];
+            double scale = this.weightScales[l] * this.inputScales[l];
+            double[] a = l == last ? outputs : workspace.a;
+            boolean wide = columns > MAX_INT_COLUMNS;
+            for (int j = 0, row = 0; j < this.outputs[l]; j++, row += columns) {
+                long sum = wide ? wideDot(w, row, workspace.x, columns) : dot(w, row, workspace.x, columns);
+                a[j] = scale * (sum - zeroPoint * this.rowSums[l][j]) + this.biases[l][j];
+            }
+            this.activations[l].forward(a, a, 0, this.outputs[l]);
+            x = a;
+        }
+    }
+
+    /**
+     * @return the sum of the products of a row of quantized weights and the quantized inputs, at most
+     * {@link #MAX_INT_COLUMNS} long
+     */
+    private static int dot(byte[] w, int row, byte[] x, int columns) {
+        int sum = 0;
+        for (int i = 0; i < columns; i++) sum += w[row + i] * x[i];
+        return sum;
+    }
+
+    private static long wideDot(byte[] w, int row, byte[] x, int columns) {
+        long sum = 0;
+        for (int i = 0; i < columns; i++) sum += w[row + i] * x[i];
+        return sum;
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.max(-128, Math.min(127, value));
+    }
+}
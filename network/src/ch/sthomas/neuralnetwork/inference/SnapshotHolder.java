@@ -0,0 +1,65 @@
+package ch.sthomas.neuralnetwork.inference;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the {@link InferenceSnapshot} serving requests and swaps it atomically for a newly trained or loaded one. Every
+ * request reads the current snapshot once and is calculated entirely with it, so a swap never mixes the weights of two
+ * models and requests never wait for it.
+ */
+public class SnapshotHolder implements InferenceModel {
+    private final AtomicReference<InferenceSnapshot> current;
+    private final ThreadLocal<double[][]> workspaces = new ThreadLocal<>();
+
+    /**
+     * @param snapshot the snapshot to serve first
+     */
+    public SnapshotHolder(InferenceSnapshot snapshot) {
+        this.current = new AtomicReference<>(snapshot);
+    }
+
+    /**
+     * @return the snapshot currently serving requests
+     */
+    public InferenceSnapshot get() {
+        return this.current.get();
+    }
+
+    /**
+     * Serve all following requests with another snapshot. Requests already running finish with the previous one.
+     *
+     * @param snapshot the new snapshot, with the same number of inputs and outputs as the current one
+     * @return the previous snapshot
+     */
+    public InferenceSnapshot swap(InferenceSnapshot snapshot) {
+        InferenceSnapshot previous = this.current.get();
+        if (snapshot.getNrOfInputs() != previous.getNrOfInputs() || snapshot.getNrOfOutputs() != previous.getNrOfOutputs())
+            throw new IllegalArgumentException("Snapshot must have the same number of inputs and outputs.");
+        return this.current.getAndSet(snapshot);
+    }
+
+    @Override
+    public int getNrOfInputs() {
+        return this.current.get().getNrOfInputs();
+    }
+
+    @Override
+    public int getNrOfOutputs() {
+        return this.current.get().getNrOfOutputs();
+    }
+
+    /**
+     * Calculate the output values with the current snapshot, in a workspace owned by the calling thread that is only
+     * replaced when a wider snapshot was swapped in.
+     */
+    @Override
+    public void calculateOutputs(double[] inputs, double[] outputs) {
+        InferenceSnapshot snapshot = this.current.get();
+        double[][] workspace = this.workspaces.get();
+        if (workspace == null || !snapshot.fits(workspace)) {
+            workspace = snapshot.newWorkspace();
+            this.workspaces.set(workspace);
+        }
+        snapshot.calculateOutputs(inputs, outputs, workspace);
+    }
+}
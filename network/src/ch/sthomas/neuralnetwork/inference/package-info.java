@@ -0,0 +1,4 @@
+/**
+ * Classes for serving inference requests with a trained network.
+ */
+package ch.sthomas.neuralnetwork.inference;
@@ -0,0 +1,43 @@
+package ch.sthomas.neuralnetwork.io;
+
+/**
+ * The type the weights and biases are stored as in a model file.
+ */
+public enum DataType {
+    FLOAT64(0, Double.BYTES),
+    FLOAT32(1, Float.BYTES);
+
+    private final int id;
+    private final int bytes;
+
+    DataType(int id, int bytes) {
+        this.id = id;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the stable identifier of the type, stored in the header of a model file
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return the number of bytes of one value
+     */
+    public int getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * @param id the identifier returned by {@link #getId()}
+     * @return the type with the identifier
+     * @throws IllegalArgumentException when no type has the identifier
+     */
+    public static DataType fromId(int id) {
+        for (DataType type : values()) {
+            if (type.id == id) return type;
+        }
+        throw new IllegalArgumentException("Unknown data type " + id + ".");
+    }
+}
@@ -0,0 +1,214 @@
+package ch.sthomas.neuralnetwork.io;
+
+import ch.sthomas.neuralnetwork.ActivationType;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A model file mapped into memory. The weights and biases are read directly from the mapped file, so opening even a
+ * large model does not copy them, the operating system loads the pages on first access.
+ *
+ * @see ModelFile
+ */
+public class MappedModel {
+    private final DataType dataType;
+    private final int[] inputs;
+    private final int[] outputs;
+    private final ActivationType[] activations;
+    private final ByteBuffer[] weights;
+    private final ByteBuffer[] biases;
+    private final long size;
+
+    MappedModel(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = read(channel, position, ModelFile.HEADER_BYTES);
+        if (header.getInt() != ModelFile.MAGIC) throw new IOException("Not a model file.");
+        int version = header.getInt();
+        if (version < 1 || version > ModelFile.VERSION)
+            throw new IOException("Unsupported model file version " + version + ".");
+        try {
+            this.dataType = DataType.fromId(header.getInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        int layers = header.getInt();
+        if (layers < 1) throw new IOException("A model file needs at least one layer.");
+        // Bound the layer count by the file before sizing anything by it
+        long layerHeaderBytes = (long) ModelFile.LAYER_HEADER_BYTES * layers;
+        if (ModelFile.headerBytes(layers) > channel.size() - position || layerHeaderBytes > Integer.MAX_VALUE)
+            throw new IOException("Model file is corrupted, it cannot hold " + layers + " layers.");
+
+        ByteBuffer layerHeaders = read(channel, position + ModelFile.HEADER_BYTES, (int) layerHeaderBytes);
+        this.inputs = new int[layers];
+        this.outputs = new int[layers];
+        this.activations = new ActivationType[layers];
+        this.weights = new ByteBuffer[layers];
+        this.biases = new ByteBuffer[layers];
+
+        long offset = position + ModelFile.headerBytes(layers);
+        for (int i = 0; i < layers; i++) {
+            this.inputs[i] = layerHeaders.getInt();
+            this.outputs[i] = layerHeaders.getInt();
+            try {
+                this.activations[i] = ActivationType.fromId(layerHeaders.getInt());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            if (this.inputs[i] < 0 || this.outputs[i] < 0 || (i > 0 && this.inputs[i] != this.outputs[i - 1]))
+                throw new IOException("Layer " + i + " does not fit the previous layer.");
+
+            long weightCount = (long) this.inputs[i] * this.outputs[i];
+            this.weights[i] = map(channel, offset, weightCount);
+            offset += ModelFile.blockBytes(weightCount, this.dataType);
+            this.biases[i] = map(channel, offset, this.outputs[i]);
+            offset += ModelFile.blockBytes(this.outputs[i], this.dataType);
+        }
+        this.size = offset - position;
+    }
+
+    /**
+     * @return the type the weights and biases are stored as
+     */
+    public DataType getDataType() {
+        return this.dataType;
+    }
+
+    /**
+     * @return the number of layers
+     */
+    public int getLayers() {
+        return this.inputs.length;
+    }
+
+    /**
+     * @param layer the index of the layer
+     * @return the number of inputs of every Neuron of the layer
+     */
+    public int getInputs(int layer) {
+        return this.inputs[layer];
+    }
+
+    /**
+     * @param layer the index of the layer
+     * @return the number of Neurons of the layer
+     */
+    public int getOutputs(int layer) {
+        return this.outputs[layer];
+    }
+
+    /**
+     * @param layer the index of the layer
+     * @return the activation function of the layer
+     */
+    public ActivationType getActivation(int layer) {
+        return this.activations[layer];
+    }
+
+    /**
+     * Returns the mapped row-major weights matrix of a layer as little-endian values of {@link #getDataType()}.
+     *
+     * @param layer the index of the layer
+     * @return a read-only view on the weights
+     */
+    public ByteBuffer getWeights(int layer) {
+        return this.weights[layer].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the mapped biases of a layer as little-endian values of {@link #getDataType()}.
+     *
+     * @param layer the index of the layer
+     * @return a read-only view on the biases
+     */
+    public ByteBuffer getBiases(int layer) {
+        return this.biases[layer].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the number of bytes the model takes up in the file
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Calculate the output values for the given inputs directly from the mapped weights.
+     *
+     * @param inputs the inputs to the first layer
+     * @return the values the output layer produced
+     */
+    public double[] calculateOutputs(double[] inputs) {
+        for (int l = 0; l < this.getLayers(); l++) {
+            double[] newInputs = new double[this.outputs[l]];
+            ActivationType activation = this.activations[l];
+            int columns = this.inputs[l];
+            switch (this.dataType) {
+                case FLOAT64 -> {
+                    DoubleBuffer w = this.getWeights(l).asDoubleBuffer(), b = this.getBiases(l).asDoubleBuffer();
+                    for (int j = 0, row = 0; j < newInputs.length; j++, row += columns) {
+                        double sum = b.get(j);
+                        for (int i = 0; i < columns; i++) sum += w.get(row + i) * inputs[i];
+                        newInputs[j] = sum;
+                    }
+                }
+                case FLOAT32 -> {
+                    FloatBuffer w = this.getWeights(l).asFloatBuffer(), b = this.getBiases(l).asFloatBuffer();
+                    for (int j = 0, row = 0; j < newInputs.length; j++, row += columns) {
+                        double sum = b.get(j);
+                        for (int i = 0; i < columns; i++) sum += w.get(row + i) * inputs[i];
+                        newInputs[j] = sum;
+                    }
+                }
+            }
+            activation.forward(newInputs, newInputs, 0, newInputs.length);
+            inputs = newInputs;
+        }
+        return inputs;
+    }
+
+    /**
+     * Copy the weights and biases into a new network.
+     *
+     * @return the network
+     */
+    public Network toNetwork() {
+        Layer[] layers = new Layer[this.getLayers()];
+        for (int l = 0; l < layers.length; l++) {
+            layers[l] = new Layer(this.inputs[l], this.outputs[l], this.activations[l]);
+            copy(this.getWeights(l), layers[l].getWeights());
+            copy(this.getBiases(l), layers[l].getBiases());
+        }
+        return new Network(layers);
+    }
+
+    private void copy(ByteBuffer source, double[] target) {
+        switch (this.dataType) {
+            case FLOAT64 -> source.asDoubleBuffer().get(target);
+            case FLOAT32 -> {
+                FloatBuffer floats = source.asFloatBuffer();
+                for (int i = 0; i < target.length; i++) target[i] = floats.get(i);
+            }
+        }
+    }
+
+    private ByteBuffer map(FileChannel channel, long offset, long values) throws IOException {
+        long bytes = values * this.dataType.getBytes();
+        if (bytes > Integer.MAX_VALUE) throw new IOException("Blocks larger than 2 GiB are not supported.");
+        if (offset + bytes > channel.size()) throw new IOException("Model file is truncated.");
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Model file is truncated.");
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,225 @@
+package ch.sthomas.neuralnetwork.io;
+
+import ch.sthomas.neuralnetwork.ActivationType;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores networks in a compact, versioned binary format that can be memory-mapped. All values are little-endian:
+ * <pre>
+ * int    magic, "NNJM"
+ * int    version
+ * int    data type id of the weights and biases, see {@link DataType}
+ * int    number of layers L
+ * L times:
+ *   int  inputs of the layer
+ *   int  Neurons of the layer
+ *   int  activation type id, see {@link ActivationType}
+ * padding to a multiple of 8 bytes
+ * L times:
+ *   the row-major weights matrix of the layer, padded to a multiple of 8 bytes
+ *   the biases of the layer, padded to a multiple of 8 bytes
+ * </pre>
+ */
+public final class ModelFile {
+    /**
+     * The first four bytes of every model file.
+     */
+    public static final int MAGIC = 'N' | 'N' << 8 | 'J' << 16 | 'M' << 24;
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 16;
+    static final int LAYER_HEADER_BYTES = 12;
+
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private ModelFile() {
+    }
+
+    /**
+     * Write a network to a file as 64-bit floating point values.
+     *
+     * @param network the network to write
+     * @param path    the file to write to, replaced if it exists
+     * @throws IOException when the file cannot be written
+     */
+    public static void write(Network network, Path path) throws IOException {
+        write(network, path, DataType.FLOAT64);
+    }
+
+    /**
+     * Write a network to a file.
+     *
+     * @param network  the network to write
+     * @param path     the file to write to, replaced if it exists
+     * @param dataType the type to store the weights and biases as
+     * @throws IOException when the file cannot be written
+     */
+    public static void write(Network network, Path path, DataType dataType) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(network, channel, dataType);
+        }
+    }
+
+    /**
+     * Write a network to a channel.
+     *
+     * @param network  the network to write
+     * @param channel  the channel to write to, at a position that is a multiple of 8
+     * @param dataType the type to store the weights and biases as
+     * @return the number of bytes written
+     * @throws IOException when the channel cannot be written
+     */
+    public static long write(Network network, WritableByteChannel channel, DataType dataType) throws IOException {
+        Layer[] layers = network.getLayers();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (Layer layer : layers) {
+            if (!(layer.getActivation() instanceof ActivationType))
+                throw new IllegalArgumentException("Only networks with activation functions of ActivationType can be stored.");
+        }
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(dataType.getId()).putInt(layers.length);
+        for (Layer layer : layers) {
+            buffer.putInt(layer.getInputs()).putInt(layer.getOutputs()).putInt(((ActivationType) layer.getActivation()).getId());
+            if (buffer.remaining() < LAYER_HEADER_BYTES) flush(buffer, channel);
+        }
+        pad(buffer, (long) HEADER_BYTES + (long) LAYER_HEADER_BYTES * layers.length);
+        long written = headerBytes(layers.length);
+
+        for (Layer layer : layers) {
+            written += writeBlock(layer.getWeights(), buffer, channel, dataType);
+            written += writeBlock(layer.getBiases(), buffer, channel, dataType);
+        }
+        flush(buffer, channel);
+        return written;
+    }
+
+    /**
+     * Read a network from a file. The weights and biases are copied into a new network.
+     *
+     * @param path the file to read
+     * @return the network
+     * @throws IOException when the file cannot be read or is not a model file
+     */
+    public static Network read(Path path) throws IOException {
+        return map(path).toNetwork();
+    }
+
+    /**
+     * Map a model file into memory without copying the weights and biases.
+     *
+     * @param path the file to map
+     * @return the mapped model
+     * @throws IOException when the file cannot be read or is not a model file
+     */
+    public static MappedModel map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return map(channel, 0);
+        }
+    }
+
+    /**
+     * Map a model stored in a channel into memory without copying the weights and biases. The mapping stays valid
+     * after the channel is closed.
+     *
+     * @param channel  the channel to map from
+     * @param position the position of the model in the channel
+     * @return the mapped model
+     * @throws IOException when the channel cannot be read or does not contain a model at the position
+     */
+    public static MappedModel map(FileChannel channel, long position) throws IOException {
+        return new MappedModel(channel, position);
+    }
+
+    /**
+     * Convert a network stored with Java serialization, as written by {@link Network#saveToDisk(String)}, to a model
+     * file.
+     *
+     * @param source the serialized network
+     * @param target the model file to write
+     * @throws IOException when a file cannot be read or written, or the source is not a serialized network
+     */
+    public static void convert(Path source, Path target) throws IOException {
+        try {
+            write(Network.readFromDisk(source), target);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(source + " does not contain a serialized network.", e);
+        }
+    }
+
+    /**
+     * Convert a serialized {@code .network} file to a model file.
+     *
+     * @param args the path of the serialized network and the path of the model file to write
+     * @throws IOException when a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ModelFile <source.network> <target>");
+            System.exit(1);
+        }
+        convert(Path.of(args[0]), Path.of(args[1]));
+    }
+
+    /**
+     * @return the number of bytes of the header with L layers, including the padding
+     */
+    static long headerBytes(int layers) {
+        return align((long) HEADER_BYTES + (long) LAYER_HEADER_BYTES * layers);
+    }
+
+    /**
+     * @return the number of bytes of a block of values, including the padding
+     */
+    static long blockBytes(long values, DataType dataType) {
+        return align(values * dataType.getBytes());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long writeBlock(double[] values, ByteBuffer buffer, WritableByteChannel channel, DataType dataType) throws IOException {
+        for (int i = 0; i < values.length; ) {
+            if (buffer.remaining() < Double.BYTES) flush(buffer, channel);
+            int count = Math.min(values.length - i, buffer.remaining() / dataType.getBytes());
+            switch (dataType) {
+                case FLOAT64 -> buffer.asDoubleBuffer().put(values, i, count);
+                case FLOAT32 -> {
+                    var floats = buffer.asFloatBuffer();
+                    for (int j = 0; j < count; j++) floats.put((float) values[i + j]);
+                }
+            }
+            buffer.position(buffer.position() + count * dataType.getBytes());
+            i += count;
+        }
+        long bytes = blockBytes(values.length, dataType);
+        if (buffer.remaining() < Double.BYTES) flush(buffer, channel);
+        pad(buffer, (long) values.length * dataType.getBytes());
+        return bytes;
+    }
+
+    private static void pad(ByteBuffer buffer, long written) {
+        for (long i = written; i < align(written); i++) buffer.put((byte) 0);
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
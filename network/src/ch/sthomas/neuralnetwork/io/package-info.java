@@ -0,0 +1,4 @@
+/**
+ * Classes for storing and loading networks in a compact binary format.
+ */
+package ch.sthomas.neuralnetwork.io;
@@ -0,0 +1,128 @@
+package ch.sthomas.neuralnetwork.kernel;
+
+/**
+ * A matrix in compressed sparse row format: the non-zero values of every row and their columns stored one row after
+ * another. Multiplying it with a vector takes one multiplication and addition per non-zero value, so a pruned weight
+ * matrix is calculated faster than its dense form once most of its weights are 0.
+ * <p>
+ * A CsrMatrix is never changed after it was created and can be used by any number of threads.
+ */
+public final class CsrMatrix {
+    private final int rows;
+    private final int columns;
+    /**
+     * The index of the first value of every row in {@link #values}, followed by the number of values
+     */
+    private final int[] rowPointers;
+    private final int[] columnIndices;
+    private final double[] values;
+
+    private CsrMatrix(int rows, int columns, int[] rowPointers, int[] columnIndices, double[] values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+    /**
+     * Compress a dense row-major matrix, dropping the values that are at most the threshold in magnitude.
+     *
+     * @param a         the matrix with {@code rows} rows and {@code columns} columns
+     * @param rows      the number of rows of A
+     * @param columns   the number of columns of A
+     * @param threshold the magnitude up to which values are dropped, 0 to only drop values that are exactly 0
+     * @return the compressed matrix
+     */
+    public static CsrMatrix of(double[] a, int rows, int columns, double threshold) {
+        int nonZeros = countNonZeros(a, rows * columns, threshold);
+        int[] rowPointers = new int[rows + 1];
+        int[] columnIndices = new int[nonZeros];
+        double[] values = new double[nonZeros];
+        int k = 0;
+        for (int j = 0, row = 0; j < rows; j++, row += columns) {
+            rowPointers[j] = k;
+            for (int i = 0; i < columns; i++) {
+                double value = a[row + i];
+                if (Math.abs(value) > threshold) {
+                    columnIndices[k] = i;
+                    values[k++] = value;
+                }
+            }
+        }
+        rowPointers[rows] = k;
+        return new CsrMatrix(rows, columns, rowPointers, columnIndices, values);
+    }
+
+    /**
+     * @param a         the values
+     * @param length    the number of values to count
+     * @param threshold the magnitude up to which values count as 0
+     * @return the number of values above the threshold in magnitude
+     */
+    public static int countNonZeros(double[] a, int length, double threshold) {
+        int nonZeros = 0;
+        for (int i = 0; i < length; i++) if (Math.abs(a[i]) > threshold) nonZeros++;
+        return nonZeros;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * @return the number of stored values
+     */
+    public int getNonZeros() {
+        return this.values.length;
+    }
+
+    /**
+     * @return the fraction of the values of the dense matrix that are stored, from 0 to 1
+     */
+    public double getDensity() {
+        long size = (long) this.rows * this.columns;
+        return size > 0 ? (double) this.values.length / size : 0.0;
+    }
+
+    /**
+     * Multiply this matrix with a vector and add a bias, y = A * x + b.
+     *
+     * @param x    the vector to multiply, at least of length {@link #getColumns()}
+     * @param bias the vector to add, or null
+     * @param y    the vector to write the result to, at least of length {@link #getRows()}
+     * @see Kernels#gemv(double[], int, int, double[], double[], double[])
+     */
+    public void gemv(double[] x, double[] bias, double[] y) {
+        for (int j = 0; j < this.rows; j++) {
+            double sum = bias != null ? bias[j] : 0.0;
+            for (int k = this.rowPointers[j], end = this.rowPointers[j + 1]; k < end; k++) {
+                sum += this.values[k] * x[this.columnIndices[k]];
+            }
+            y[j] = sum;
+        }
+    }
+
+    /**
+     * @return the row-major dense matrix
+     */
+    public double[] toDense() {
+        double[] a = new double[this.rows * this.columns];
+        for (int j = 0, row = 0; j < this.rows; j++, row += this.columns) {
+            for (int k = this.rowPointers[j], end = this.rowPointers[j + 1]; k < end; k++) {
+                a[row + this.columnIndices[k]] = this.values[k];
+            }
+        }
+        return a;
+    }
+}
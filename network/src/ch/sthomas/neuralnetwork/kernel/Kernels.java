@@ -0,0 +1,117 @@
+package ch.sthomas.neuralnetwork.kernel;
+
+/**
+ * The vector and matrix operations the forward and backward passes are built on. All matrices are row-major.
+ * <p>
+ * The implementation is selected once at startup by {@link #get()}: the SIMD implementation on the JDK Vector API
+ * if the module {@code jdk.incubator.vector} is available (run with {@code --add-modules jdk.incubator.vector}),
+ * otherwise the scalar one. The system property {@value #PROPERTY} set to {@code scalar} or {@code vector} overrides
+ * the selection.
+ */
+public interface Kernels {
+    /**
+     * The system property to select the implementation with.
+     */
+    String PROPERTY = "ch.sthomas.neuralnetwork.kernels";
+
+    /**
+     * The number of bytes of the matrix B that {@link #gemm} keeps in the cache while passing over A.
+     */
+    int GEMM_BLOCK_BYTES = 128 * 1024;
+
+    /**
+     * @return the implementation selected at startup
+     */
+    static Kernels get() {
+        return Selection.KERNELS;
+    }
+
+    /**
+     * @return the name of the implementation
+     */
+    String getName();
+
+    /**
+     * Calculate the dot product of two vectors.
+     *
+     * @param x       the first vector
+     * @param xOffset the index of the first value of x
+     * @param y       the second vector
+     * @param yOffset the index of the first value of y
+     * @param length  the number of values
+     * @return the sum of x[xOffset + i] * y[yOffset + i]
+     */
+    double dot(double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    /**
+     * Add a multiple of a vector to another one, y += alpha * x.
+     *
+     * @param alpha   the factor x is multiplied with
+     * @param x       the vector to add
+     * @param xOffset the index of the first value of x
+     * @param y       the vector to add to
+     * @param yOffset the index of the first value of y
+     * @param length  the number of values
+     */
+    void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    /**
+     * Multiply a matrix with a vector and add a bias, y = A * x + b.
+     *
+     * @param a       the matrix with {@code rows} rows and {@code columns} columns
+     * @param rows    the number of rows of A and values of y
+     * @param columns the number of columns of A and values of x
+     * @param x       the vector to multiply
+     * @param bias    the vector to add, or null
+     * @param y       the vector to write the result to
+     */
+    default void gemv(double[] a, int rows, int columns, double[] x, double[] bias, double[] y) {
+        for (int j = 0, row = 0; j < rows; j++, row += columns) {
+            y[j] = this.dot(a, row, x, 0, columns) + (bias == null ? 0.0 : bias[j]);
+        }
+    }
+
+    /**
+     * Multiply a matrix with a vector and add a bias in single precision, y = A * x + b.
+     *
+     * @param a       the matrix with {@code rows} rows and {@code columns} columns
+     * @param rows    the number of rows of A and values of y
+     * @param columns the number of columns of A and values of x
+     * @param x       the vector to multiply
+     * @param bias    the vector to add, or null
+     * @param y       the vector to write the result to
+     */
+    default void gemv(float[] a, int rows, int columns, float[] x, float[] bias, float[] y) {
+        for (int j = 0, row = 0; j < rows; j++, row += columns) {
+            float sum = 0.0f;
+            for (int i = 0; i < columns; i++) {
+                sum += a[row + i] * x[i];
+            }
+            y[j] = sum + (bias == null ? 0.0f : bias[j]);
+        }
+    }
+
+    /**
+     * Multiply a matrix with the transpose of another one, C = A * B^T. The rows of B are the rows of the result's
+     * columns, so for a layer with the weights matrix B and a batch of inputs A every row of C holds the values of z
+     * of one input. B is passed in blocks, so every block is loaded from memory once for all rows of A.
+     *
+     * @param a the matrix with {@code m} rows and {@code k} columns
+     * @param b the matrix with {@code n} rows and {@code k} columns
+     * @param c the matrix with {@code m} rows and {@code n} columns to write the result to
+     * @param m the number of rows of A
+     * @param n the number of rows of B
+     * @param k the number of columns of A and B
+     */
+    default void gemm(double[] a, double[] b, double[] c, int m, int n, int k) {
+        int block = Math.max(1, GEMM_BLOCK_BYTES / (Double.BYTES * Math.max(1, k)));
+        for (int from = 0; from < n; from += block) {
+            int to = Math.min(n, from + block);
+            for (int i = 0, rowA = 0; i < m; i++, rowA += k) {
+                for (int j = from; j < to; j++) {
+                    c[i * n + j] = this.dot(a, rowA, b, j * k, k);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ch.sthomas.neuralnetwork.kernel;
+
+/**
+ * The reference implementation of the {@link Kernels} with plain loops.
+ */
+public class ScalarKernels implements Kernels {
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += x[xOffset + i] * y[yOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ch.sthomas.neuralnetwork.kernel;
+
+/**
+ * Selects the {@link Kernels} implementation once, when it is first used.
+ */
+final class Selection {
+    static final Kernels KERNELS = select();
+
+    private Selection() {
+    }
+
+    private static Kernels select() {
+        String requested = System.getProperty(Kernels.PROPERTY, "");
+        if (requested.equals("scalar")) return new ScalarKernels();
+
+        boolean available = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        if (requested.equals("vector") && !available)
+            throw new IllegalStateException("Vector kernels requested, but jdk.incubator.vector is not available, run with --add-modules jdk.incubator.vector.");
+        if (!available) return new ScalarKernels();
+
+        try {
+            // Loaded by name, so the Vector API is only linked when it is available
+            return (Kernels) Class.forName("ch.sthomas.neuralnetwork.kernel.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            if (requested.equals("vector")) throw new IllegalStateException("Vector kernels could not be loaded.", e);
+            return new ScalarKernels();
+        }
+    }
+}
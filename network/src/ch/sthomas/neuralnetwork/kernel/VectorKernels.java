@@ -0,0 +1,184 @@
+package ch.sthomas.neuralnetwork.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The SIMD implementation of the {@link Kernels} on the JDK Vector API, using the widest vectors the CPU supports.
+ * Requires the module {@code jdk.incubator.vector}.
+ */
+public class VectorKernels implements Kernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.vectorBitSize() + " bit)";
+    }
+
+    @Override
+    public double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        // Two accumulators, so consecutive fused multiply-adds do not wait for each other
+        DoubleVector sum0 = DoubleVector.zero(SPECIES);
+        DoubleVector sum1 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = length - 2 * LANES; i <= bound; i += 2 * LANES) {
+            sum0 = DoubleVector.fromArray(SPECIES, x, xOffset + i).fma(DoubleVector.fromArray(SPECIES, y, yOffset + i), sum0);
+            sum1 = DoubleVector.fromArray(SPECIES, x, xOffset + i + LANES).fma(DoubleVector.fromArray(SPECIES, y, yOffset + i + LANES), sum1);
+        }
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            sum0 = DoubleVector.fromArray(SPECIES, x, xOffset + i).fma(DoubleVector.fromArray(SPECIES, y, yOffset + i), sum0);
+        }
+        double sum = sum0.add(sum1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += x[xOffset + i] * y[yOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        DoubleVector factor = DoubleVector.broadcast(SPECIES, alpha);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, x, xOffset + i)
+                    .fma(factor, DoubleVector.fromArray(SPECIES, y, yOffset + i))
+                    .intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void gemv(double[] a, int rows, int columns, double[] x, double[] bias, double[] y) {
+        int j = 0, row = 0;
+        // Four rows at a time, so every chunk of x is loaded once for four rows
+        for (; j + 4 <= rows; j += 4, row += 4 * columns) {
+            DoubleVector sum0 = DoubleVector.zero(SPECIES), sum1 = DoubleVector.zero(SPECIES);
+            DoubleVector sum2 = DoubleVector.zero(SPECIES), sum3 = DoubleVector.zero(SPECIES);
+            int i = 0;
+            for (int bound = SPECIES.loopBound(columns); i < bound; i += LANES) {
+                DoubleVector v = DoubleVector.fromArray(SPECIES, x, i);
+                sum0 = DoubleVector.fromArray(SPECIES, a, row + i).fma(v, sum0);
+                sum1 = DoubleVector.fromArray(SPECIES, a, row + columns + i).fma(v, sum1);
+                sum2 = DoubleVector.fromArray(SPECIES, a, row + 2 * columns + i).fma(v, sum2);
+                sum3 = DoubleVector.fromArray(SPECIES, a, row + 3 * columns + i).fma(v, sum3);
+            }
+            double s0 = sum0.reduceLanes(VectorOperators.ADD), s1 = sum1.reduceLanes(VectorOperators.ADD);
+            double s2 = sum2.reduceLanes(VectorOperators.ADD), s3 = sum3.reduceLanes(VectorOperators.ADD);
+            for (; i < columns; i++) {
+                double v = x[i];
+                s0 += a[row + i] * v;
+                s1 += a[row + columns + i] * v;
+                s2 += a[row + 2 * columns + i] * v;
+                s3 += a[row + 3 * columns + i] * v;
+            }
+            if (bias != null) {
+                s0 += bias[j];
+                s1 += bias[j + 1];
+                s2 += bias[j + 2];
+                s3 += bias[j + 3];
+            }
+            y[j] = s0;
+            y[j + 1] = s1;
+            y[j + 2] = s2;
+            y[j + 3] = s3;
+        }
+        for (; j < rows; j++, row += columns) {
+            y[j] = this.dot(a, row, x, 0, columns) + (bias == null ? 0.0 : bias[j]);
+        }
+    }
+
+    @Override
+    public void gemv(float[] a, int rows, int columns, float[] x, float[] bias, float[] y) {
+        int lanes = FLOAT_SPECIES.length();
+        for (int j = 0, row = 0; j < rows; j++, row += columns) {
+            FloatVector sum0 = FloatVector.zero(FLOAT_SPECIES);
+            FloatVector sum1 = FloatVector.zero(FLOAT_SPECIES);
+            int i = 0;
+            for (int bound = columns - 2 * lanes; i <= bound; i += 2 * lanes) {
+                sum0 = FloatVector.fromArray(FLOAT_SPECIES, a, row + i).fma(FloatVector.fromArray(FLOAT_SPECIES, x, i), sum0);
+                sum1 = FloatVector.fromArray(FLOAT_SPECIES, a, row + i + lanes).fma(FloatVector.fromArray(FLOAT_SPECIES, x, i + lanes), sum1);
+            }
+            for (int bound = FLOAT_SPECIES.loopBound(columns); i < bound; i += lanes) {
+                sum0 = FloatVector.fromArray(FLOAT_SPECIES, a, row + i).fma(FloatVector.fromArray(FLOAT_SPECIES, x, i), sum0);
+            }
+            float sum = sum0.add(sum1).reduceLanes(VectorOperators.ADD);
+            for (; i < columns; i++) {
+                sum += a[row + i] * x[i];
+            }
+            y[j] = sum + (bias == null ? 0.0f : bias[j]);
+        }
+    }
+
+    @Override
+    public void gemm(double[] a, double[] b, double[] c, int m, int n, int k) {
+        int block = Math.max(4, GEMM_BLOCK_BYTES / (Double.BYTES * Math.max(1, k)));
+        for (int from = 0; from < n; from += block) {
+            int to = Math.min(n, from + block);
+            int i = 0;
+            // Two rows of A with four rows of B at a time, so every loaded chunk is used for several products
+            for (; i + 2 <= m; i += 2) {
+                int j = from;
+                for (; j + 4 <= to; j += 4) {
+                    this.dot2x4(a, i * k, b, j * k, k, c, i * n + j, n);
+                }
+                for (; j < to; j++) {
+                    c[i * n + j] = this.dot(a, i * k, b, j * k, k);
+                    c[(i + 1) * n + j] = this.dot(a, (i + 1) * k, b, j * k, k);
+                }
+            }
+            for (; i < m; i++) {
+                for (int j = from; j < to; j++) {
+                    c[i * n + j] = this.dot(a, i * k, b, j * k, k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate the dot products of two consecutive rows of A with four consecutive rows of B.
+     */
+    private void dot2x4(double[] a, int rowA, double[] b, int rowB, int k, double[] c, int rowC, int n) {
+        DoubleVector s00 = DoubleVector.zero(SPECIES), s01 = DoubleVector.zero(SPECIES);
+        DoubleVector s02 = DoubleVector.zero(SPECIES), s03 = DoubleVector.zero(SPECIES);
+        DoubleVector s10 = DoubleVector.zero(SPECIES), s11 = DoubleVector.zero(SPECIES);
+        DoubleVector s12 = DoubleVector.zero(SPECIES), s13 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(k); i < bound; i += LANES) {
+            DoubleVector a0 = DoubleVector.fromArray(SPECIES, a, rowA + i);
+            DoubleVector a1 = DoubleVector.fromArray(SPECIES, a, rowA + k + i);
+            DoubleVector b0 = DoubleVector.fromArray(SPECIES, b, rowB + i);
+            DoubleVector b1 = DoubleVector.fromArray(SPECIES, b, rowB + k + i);
+            DoubleVector b2 = DoubleVector.fromArray(SPECIES, b, rowB + 2 * k + i);
+            DoubleVector b3 = DoubleVector.fromArray(SPECIES, b, rowB + 3 * k + i);
+            s00 = a0.fma(b0, s00);
+            s01 = a0.fma(b1, s01);
+            s02 = a0.fma(b2, s02);
+            s03 = a0.fma(b3, s03);
+            s10 = a1.fma(b0, s10);
+            s11 = a1.fma(b1, s11);
+            s12 = a1.fma(b2, s12);
+            s13 = a1.fma(b3, s13);
+        }
+        int row0 = rowC, row1 = rowC + n;
+        c[row0] = s00.reduceLanes(VectorOperators.ADD);
+        c[row0 + 1] = s01.reduceLanes(VectorOperators.ADD);
+        c[row0 + 2] = s02.reduceLanes(VectorOperators.ADD);
+        c[row0 + 3] = s03.reduceLanes(VectorOperators.ADD);
+        c[row1] = s10.reduceLanes(VectorOperators.ADD);
+        c[row1 + 1] = s11.reduceLanes(VectorOperators.ADD);
+        c[row1 + 2] = s12.reduceLanes(VectorOperators.ADD);
+        c[row1 + 3] = s13.reduceLanes(VectorOperators.ADD);
+        for (; i < k; i++) {
+            for (int r = 0; r < 2; r++) {
+                double x = a[rowA + r * k + i];
+                for (int q = 0; q < 4; q++) c[rowC + r * n + q] += x * b[rowB + q * k + i];
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Vector and matrix kernels the network is calculated with, in a scalar and a SIMD implementation.
+ */
+package ch.sthomas.neuralnetwork.kernel;
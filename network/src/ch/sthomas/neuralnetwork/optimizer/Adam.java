@@ -0,0 +1,49 @@
+package ch.sthomas.neuralnetwork.optimizer;
+
+/**
+ * Adaptive moment estimation. Keeps moving averages of the gradients and of the squared gradients, corrects both for
+ * starting at 0 and updates p = p - learningRate * m / (sqrt(v) + epsilon).
+ */
+public class Adam extends Optimizer {
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+
+    /**
+     * Create a new optimizer with the usual defaults, beta1 = 0.9, beta2 = 0.999 and epsilon = 1e-8.
+     */
+    public Adam() {
+        this(0.9, 0.999, 1e-8);
+    }
+
+    /**
+     * @param beta1   the factor the average of the gradients is kept with per step, from 0 to 1
+     * @param beta2   the factor the average of the squared gradients is kept with per step, from 0 to 1
+     * @param epsilon the value added to the root to not divide by 0
+     */
+    public Adam(double beta1, double beta2, double epsilon) {
+        super(2);
+        if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1)
+            throw new IllegalArgumentException("Betas must be in [0, 1).");
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    protected void update(double[] parameters, double[] gradients, double scale, double learningRate, long step, double[][] state) {
+        double[] m = state[0], v = state[1];
+        double correction1 = 1 - Math.pow(this.beta1, step);
+        double correction2 = 1 - Math.pow(this.beta2, step);
+        double stepSize = learningRate / correction1;
+        double rootCorrection2 = Math.sqrt(correction2);
+        for (int j = 0; j < parameters.length; j++) {
+            double g = scale * gradients[j];
+            double mj = this.beta1 * m[j] + (1 - this.beta1) * g;
+            double vj = this.beta2 * v[j] + (1 - this.beta2) * g * g;
+            m[j] = mj;
+            v[j] = vj;
+            parameters[j] -= stepSize * mj / (Math.sqrt(vj) / rootCorrection2 + this.epsilon);
+        }
+    }
+}
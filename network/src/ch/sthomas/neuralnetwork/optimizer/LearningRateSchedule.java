@@ -0,0 +1,58 @@
+package ch.sthomas.neuralnetwork.optimizer;
+
+/**
+ * The learning rate of every step, a step being one update of the weights.
+ */
+@FunctionalInterface
+public interface LearningRateSchedule {
+    /**
+     * @param step the index of the step, starting at 0
+     * @return the learning rate of the step
+     */
+    double getLearningRate(long step);
+
+    /**
+     * @param learningRate the learning rate of every step
+     * @return a schedule with the same learning rate for every step
+     */
+    static LearningRateSchedule constant(double learningRate) {
+        return step -> learningRate;
+    }
+
+    /**
+     * @param learningRate the learning rate of the first steps
+     * @param stepSize     the number of steps after which the learning rate is multiplied with {@code gamma}
+     * @param gamma        the factor the learning rate decays with every {@code stepSize} steps
+     * @return a schedule decaying in steps
+     */
+    static LearningRateSchedule step(double learningRate, long stepSize, double gamma) {
+        if (stepSize < 1) throw new IllegalArgumentException("Step size must be at least 1.");
+        return step -> learningRate * Math.pow(gamma, step / stepSize);
+    }
+
+    /**
+     * @param learningRate    the learning rate of the first step
+     * @param minLearningRate the learning rate at the end, kept after {@code steps}
+     * @param steps           the number of steps to anneal over
+     * @return a schedule following half a cosine from {@code learningRate} to {@code minLearningRate}
+     */
+    static LearningRateSchedule cosine(double learningRate, double minLearningRate, long steps) {
+        if (steps < 1) throw new IllegalArgumentException("Steps must be at least 1.");
+        return step -> {
+            if (step >= steps) return minLearningRate;
+            return minLearningRate + (learningRate - minLearningRate) * (1 + Math.cos(Math.PI * step / steps)) / 2;
+        };
+    }
+
+    /**
+     * @param warmupSteps the number of steps to ramp up over
+     * @return a schedule increasing linearly from almost 0 to this schedule over the first {@code warmupSteps}
+     * steps, then following this schedule shifted by the warmup
+     */
+    default LearningRateSchedule withWarmup(long warmupSteps) {
+        if (warmupSteps < 0) throw new IllegalArgumentException("Warmup steps must not be negative.");
+        return step -> step < warmupSteps
+                ? this.getLearningRate(0) * (step + 1) / warmupSteps
+                : this.getLearningRate(step - warmupSteps);
+    }
+}
@@ -0,0 +1,53 @@
+package ch.sthomas.neuralnetwork.optimizer;
+
+/**
+ * Gradient descent with momentum, v = momentum * v - learningRate * g, p = p + v. With Nesterov momentum the update
+ * looks ahead along the velocity, p = p + momentum * v - learningRate * g.
+ */
+public class Momentum extends Optimizer {
+    /**
+     * The default factor the velocity is kept with per step.
+     */
+    public static final double DEFAULT_MOMENTUM = 0.9;
+
+    private final double momentum;
+    private final boolean nesterov;
+
+    /**
+     * Create a new optimizer with the default momentum.
+     */
+    public Momentum() {
+        this(DEFAULT_MOMENTUM, false);
+    }
+
+    /**
+     * @param momentum the factor the velocity is kept with per step, from 0 to 1
+     * @param nesterov true for Nesterov momentum
+     */
+    public Momentum(double momentum, boolean nesterov) {
+        super(1);
+        if (momentum < 0 || momentum >= 1) throw new IllegalArgumentException("Momentum must be in [0, 1).");
+        this.momentum = momentum;
+        this.nesterov = nesterov;
+    }
+
+    /**
+     * @param momentum the factor the velocity is kept with per step, from 0 to 1
+     * @return a new optimizer with Nesterov momentum
+     */
+    public static Momentum nesterov(double momentum) {
+        return new Momentum(momentum, true);
+    }
+
+    @Override
+    protected void update(double[] parameters, double[] gradients, double scale, double learningRate, long step, double[][] state) {
+        double[] velocity = state[0];
+        double factor = learningRate * scale;
+        for (int j = 0; j < parameters.length; j++) {
+            double g = factor * gradients[j];
+            double v = this.momentum * velocity[j] - g;
+            velocity[j] = v;
+            parameters[j] += this.nesterov ? this.momentum * v - g : v;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ch.sthomas.neuralnetwork.optimizer;
+
+import ch.sthomas.neuralnetwork.Gradients;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+
+/**
+ * Updates the weights and biases of a {@link Network} against the average of summed {@link Gradients}.
+ * <p>
+ * An optimizer keeps its state per parameter in flat arrays of the same shape as the layers' weights and biases, a
+ * number of {@link #getStateSlots() slots} per array. The state is created for the first network the optimizer is
+ * applied to, so an instance must only be used for one network and by one thread at a time.
+ */
+public abstract class Optimizer {
+    private final int stateSlots;
+    private Network network;
+    /**
+     * The state of every parameter array, [(2 * layer + (0 for weights, 1 for biases)) * slots + slot][parameter]
+     */
+    private double[][] state;
+    private long steps;
+    /**
+     * The state arrays of the parameter array being updated, reused for every array so a step allocates nothing
+     */
+    private final double[][] slots;
+
+    /**
+     * @param stateSlots the number of values the optimizer keeps per parameter
+     */
+    protected Optimizer(int stateSlots) {
+        this.stateSlots = stateSlots;
+        this.slots = new double[stateSlots][];
+    }
+
+    /**
+     * Update the weights and biases of the network against the average of the given gradients.
+     *
+     * @param network      the network to update, must be the same for every call
+     * @param gradients    the summed gradients of a number of samples
+     * @param learningRate the learning rate of this step
+     */
+    public void apply(Network network, Gradients gradients, double learningRate) {
+        if (gradients.getSamples() == 0) return;
+        if (this.network != network) {
+            if (this.network != null) throw new IllegalStateException("Optimizer is already used for another network.");
+            this.network = network;
+            this.state = createState(network, this.stateSlots);
+        }
+        this.steps++;
+        double scale = 1.0 / gradients.getSamples();
+        Layer[] layers = network.getLayers();
+        for (int i = 0; i < layers.length; i++) {
+            this.update(layers[i].getWeights(), gradients.getWeights(i), scale, learningRate, this.steps, this.slots(2 * i));
+            this.update(layers[i].getBiases(), gradients.getBiases(i), scale, learningRate, this.steps, this.slots(2 * i + 1));
+        }
+    }
+
+    /**
+     * Update one array of parameters.
+     *
+     * @param parameters   the weights or biases of a layer
+     * @param gradients    the summed gradients of the parameters
+     * @param scale        the factor turning the summed gradients into the average gradients
+     * @param learningRate the learning rate of this step
+     * @param step         the number of this step, starting at 1
+     * @param state        the {@link #getStateSlots()} state arrays of the parameters
+     */
+    protected abstract void update(double[] parameters, double[] gradients, double scale, double learningRate, long step, double[][] state);
+
+    /**
+     * @return the number of values the optimizer keeps per parameter
+     */
+    public int getStateSlots() {
+        return this.stateSlots;
+    }
+
+    /**
+     * @return the number of steps taken since the optimizer was created or {@link #reset()}
+     */
+    public long getSteps() {
+        return this.steps;
+    }
+
+    /**
+     * Returns the state arrays, for example to store them with the weights. For layer l the arrays of the weights are
+     * at {@code (2 * l) * slots + slot} and the ones of the biases at {@code (2 * l + 1) * slots + slot}.
+     *
+     * @return the live state arrays, empty before the first step
+     */
+    public double[][] getState() {
+        return this.state == null ? new double[0][] : this.state;
+    }
+
+    /**
+     * Restore the state of an optimizer for the given network, for example to resume training.
+     *
+     * @param network the network the state belongs to
+     * @param steps   the number of steps taken
+     * @param state   the state arrays in the order of {@link #getState()}, copied
+     */
+    public void restore(Network network, long steps, double[][] state) {
+        double[][] restored = createState(network, this.stateSlots);
+        if (state.length != restored.length)
+            throw new IllegalArgumentException("State does not match the network and optimizer.");
+        for (int i = 0; i < restored.length; i++) {
+            if (state[i].length != restored[i].length)
+                throw new IllegalArgumentException("State does not match the network and optimizer.");
+            System.arraycopy(state[i], 0, restored[i], 0, restored[i].length);
+        }
+        this.network = network;
+        this.state = restored;
+        this.steps = steps;
+    }
+
+    /**
+     * Forget the network, the state and the number of steps.
+     */
+    public void reset() {
+        this.network = null;
+        this.state = null;
+        this.steps = 0;
+    }
+
+    private double[][] slots(int array) {
+        for (int slot = 0; slot < this.stateSlots; slot++) this.slots[slot] = this.state[array * this.stateSlots + slot];
+        return this.slots;
+    }
+
+    private static double[][] createState(Network network, int slots) {
+        Layer[] layers = network.getLayers();
+        double[][] state = new double[2 * layers.length * slots][];
+        for (int i = 0; i < layers.length; i++) {
+            for (int slot = 0; slot < slots; slot++) {
+                state[2 * i * slots + slot] = new double[layers[i].getWeights().length];
+                state[(2 * i + 1) * slots + slot] = new double[layers[i].getBiases().length];
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,39 @@
+package ch.sthomas.neuralnetwork.optimizer;
+
+/**
+ * Divides every gradient by a moving average of its magnitude, s = decay * s + (1 - decay) * g^2,
+ * p = p - learningRate * g / (sqrt(s) + epsilon).
+ */
+public class RmsProp extends Optimizer {
+    private final double decay;
+    private final double epsilon;
+
+    /**
+     * Create a new optimizer with a decay of 0.9 and an epsilon of 1e-8.
+     */
+    public RmsProp() {
+        this(0.9, 1e-8);
+    }
+
+    /**
+     * @param decay   the factor the average of the squared gradients is kept with per step, from 0 to 1
+     * @param epsilon the value added to the root to not divide by 0
+     */
+    public RmsProp(double decay, double epsilon) {
+        super(1);
+        if (decay < 0 || decay >= 1) throw new IllegalArgumentException("Decay must be in [0, 1).");
+        this.decay = decay;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    protected void update(double[] parameters, double[] gradients, double scale, double learningRate, long step, double[][] state) {
+        double[] squares = state[0];
+        for (int j = 0; j < parameters.length; j++) {
+            double g = scale * gradients[j];
+            double s = this.decay * squares[j] + (1 - this.decay) * g * g;
+            squares[j] = s;
+            parameters[j] -= learningRate * g / (Math.sqrt(s) + this.epsilon);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ch.sthomas.neuralnetwork.optimizer;
+
+/**
+ * Plain gradient descent, p = p - learningRate * g. Keeps no state.
+ *
+ * @see ch.sthomas.neuralnetwork.Network#applyGradients(ch.sthomas.neuralnetwork.Gradients, double)
+ */
+public class Sgd extends Optimizer {
+    /**
+     * Create a new optimizer.
+     */
+    public Sgd() {
+        super(0);
+    }
+
+    @Override
+    protected void update(double[] parameters, double[] gradients, double scale, double learningRate, long step, double[][] state) {
+        double factor = learningRate * scale;
+        for (int j = 0; j < parameters.length; j++) parameters[j] -= factor * gradients[j];
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Optimizers updating the weights and biases of a network from its cost gradients, and schedules of the learning rate.
+ */
+package ch.sthomas.neuralnetwork.optimizer;
@@ -0,0 +1,33 @@
+package ch.sthomas.neuralnetwork.training;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads the number of bytes the current thread allocated, if the JVM supports measuring it.
+ */
+final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private Allocations() {
+    }
+
+    /**
+     * @return the bytes allocated by the current thread since it started, or -1 if they cannot be measured
+     */
+    static long current() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                    && threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        } catch (UnsupportedOperationException | SecurityException | LinkageError e) {
+            // Fall through, allocations are not measured
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package ch.sthomas.neuralnetwork.training;
+
+import java.util.SplittableRandom;
+
+/**
+ * A {@link DataSource} over samples already held in memory. Can visit the samples in a new random order every epoch.
+ */
+public class ArrayDataSource implements DataSource {
+    private final double[][] inputs;
+    private final double[][] expected;
+    private final int[] order;
+    private final SplittableRandom random;
+    private int position;
+
+    /**
+     * Create a new source visiting the samples in their order.
+     *
+     * @param inputs   the inputs, first dimension = sample
+     * @param expected the expected outputs, same dimensions as the {@code inputs}
+     */
+    public ArrayDataSource(double[][] inputs, double[][] expected) {
+        this(inputs, expected, null);
+    }
+
+    /**
+     * Create a new source visiting the samples in a new random order every epoch.
+     *
+     * @param inputs   the inputs, first dimension = sample
+     * @param expected the expected outputs, same dimensions as the {@code inputs}
+     * @param seed     the seed for shuffling, the same seed visits the samples in the same orders
+     */
+    public ArrayDataSource(double[][] inputs, double[][] expected, long seed) {
+        this(inputs, expected, new SplittableRandom(seed));
+    }
+
+    private ArrayDataSource(double[][] inputs, double[][] expected, SplittableRandom random) {
+        if (inputs.length != expected.length)
+            throw new IllegalArgumentException("Inputs and expected outputs must contain the same number of samples.");
+        if (inputs.length == 0)
+            throw new IllegalArgumentException("A data source needs at least one sample.");
+        this.inputs = inputs;
+        this.expected = expected;
+        this.random = random;
+        this.order = new int[inputs.length];
+        for (int i = 0; i < this.order.length; i++) this.order[i] = i;
+        this.position = this.order.length;
+    }
+
+    @Override
+    public int getInputSize() {
+        return this.inputs[0].length;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return this.expected[0].length;
+    }
+
+    @Override
+    public void rewind() {
+        this.position = 0;
+        if (this.random == null) return;
+        // Fisher-Yates shuffle of the visiting order
+        for (int i = this.order.length - 1; i > 0; i--) {
+            int j = this.random.nextInt(i + 1);
+            int swap = this.order[i];
+            this.order[i] = this.order[j];
+            this.order[j] = swap;
+        }
+    }
+
+    @Override
+    public boolean next(double[] input, double[] expected) {
+        if (this.position >= this.order.length) return false;
+        int sample = this.order[this.position++];
+        System.arraycopy(this.inputs[sample], 0, input, 0, input.length);
+        System.arraycopy(this.expected[sample], 0, expected, 0, expected.length);
+        return true;
+    }
+}
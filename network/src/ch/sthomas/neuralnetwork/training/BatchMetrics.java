@@ -0,0 +1,26 @@
+package ch.sthomas.neuralnetwork.training;
+
+/**
+ * What was measured while training on one batch.
+ * <p>
+ * The forward and backward times are the time every worker spent in them, summed over the workers that calculated the
+ * batch. With a parallelism above 1 they can therefore add up to more than the elapsed time of the batch, while the
+ * update time is elapsed time on the calling thread. The allocated bytes count the calling thread and the workers.
+ *
+ * @param epoch            the index of the epoch, starting at 0
+ * @param batch            the index of the batch in the epoch, starting at 0
+ * @param samples          the number of samples of the batch
+ * @param loss             the average cost per sample, measured before the update
+ * @param samplesPerSecond the samples of the batch divided by the time from its first forward pass to the end of the
+ *                         update
+ * @param forwardNanos     the nanoseconds the workers spent in forward passes, summed
+ * @param backwardNanos    the nanoseconds the workers spent in backward passes, summed
+ * @param updateNanos      the elapsed nanoseconds of updating the weights
+ * @param gradientNorm     the euclidean norm of the average gradient of the batch
+ * @param allocatedBytes   the bytes the calling thread and the workers allocated during the batch, -1 if the JVM cannot
+ *                         measure allocations
+ */
+public record BatchMetrics(int epoch, long batch, int samples, double loss, double samplesPerSecond,
+                           long forwardNanos, long backwardNanos, long updateNanos, double gradientNorm,
+                           long allocatedBytes) {
+}
@@ -0,0 +1,272 @@
+package ch.sthomas.neuralnetwork.training;
+
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.Parameters;
+import ch.sthomas.neuralnetwork.io.DataType;
+import ch.sthomas.neuralnetwork.io.MappedModel;
+import ch.sthomas.neuralnetwork.io.ModelFile;
+import ch.sthomas.neuralnetwork.optimizer.Optimizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A checkpoint written by a {@link Checkpointer}, the weights of a network and the state of its optimizer. A checkpoint
+ * file is a {@link ModelFile} followed by a state block, so it can also be read or mapped as a plain model file. All
+ * values are little-endian:
+ * <pre>
+ * the model file, ending at a multiple of 8 bytes
+ * int    magic, "NNJS"
+ * int    version
+ * long   epoch
+ * long   steps of the optimizer
+ * int    state slots S of the optimizer
+ * int    length N of the optimizer's class name
+ * N bytes the UTF-8 class name of the optimizer, padded to a multiple of 8 bytes
+ * 2 * L * S times:
+ *   the state array in the order of {@link Optimizer#getState()}, if the optimizer took at least one step
+ * </pre>
+ */
+public class Checkpoint {
+    /**
+     * The first four bytes of the state block.
+     */
+    public static final int MAGIC = 'N' | 'N' << 8 | 'J' << 16 | 'S' << 24;
+    /**
+     * The version of the state block written by this class.
+     */
+    public static final int VERSION = 1;
+
+    static final String PREFIX = "checkpoint-";
+    static final String SUFFIX = ".nnjm";
+    /**
+     * The file name of the checkpoint of the best weights, see {@link Checkpointer#checkpointBest(Trainer, long)}
+     */
+    static final String BEST = PREFIX + "best" + SUFFIX;
+    private static final Pattern NAME = Pattern.compile(Pattern.quote(PREFIX) + "(\\d+)" + Pattern.quote(SUFFIX));
+    private static final int STATE_HEADER_BYTES = 32;
+
+    private final Path path;
+    private final Network network;
+    private final long epoch;
+    private final long steps;
+    private final String optimizer;
+    private final double[][] optimizerState;
+
+    private Checkpoint(Path path, Network network, long epoch, long steps, String optimizer, double[][] optimizerState) {
+        this.path = path;
+        this.network = network;
+        this.epoch = epoch;
+        this.steps = steps;
+        this.optimizer = optimizer;
+        this.optimizerState = optimizerState;
+    }
+
+    /**
+     * Read a checkpoint file.
+     *
+     * @param path the file to read
+     * @return the checkpoint
+     * @throws IOException when the file cannot be read or is not a checkpoint
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedModel model = ModelFile.map(channel, 0);
+            Network network = model.toNetwork();
+
+            long position = model.getSize();
+            ByteBuffer header = read(channel, position, STATE_HEADER_BYTES);
+            if (header.getInt() != MAGIC) throw new IOException("Not a checkpoint file.");
+            int version = header.getInt();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported checkpoint version " + version + ".");
+            long epoch = header.getLong();
+            long steps = header.getLong();
+            int slots = header.getInt();
+            int nameLength = header.getInt();
+            if (slots < 0 || nameLength < 0 || nameLength > 1 << 16) throw new IOException("Checkpoint is corrupted.");
+            position += STATE_HEADER_BYTES;
+            String optimizer = StandardCharsets.UTF_8.decode(read(channel, position, nameLength)).toString();
+            position += align(nameLength);
+
+            double[][] state = new double[0][];
+            if (steps > 0 && slots > 0) {
+                state = new double[2 * model.getLayers() * slots][];
+                for (int l = 0; l < model.getLayers(); l++) {
+                    for (int array = 0; array < 2; array++) {
+                        long length = array == 0
+                                ? (long) model.getInputs(l) * model.getOutputs(l) : model.getOutputs(l);
+                        long bytes = length * Double.BYTES;
+                        if (bytes > Integer.MAX_VALUE)
+                            throw new IOException("State arrays larger than 2 GiB are not supported.");
+                        for (int slot = 0; slot < slots; slot++) {
+                            double[] values = new double[(int) length];
+                            read(channel, position, (int) bytes).asDoubleBuffer().get(values);
+                            position += bytes;
+                            state[(2 * l + array) * slots + slot] = values;
+                        }
+                    }
+                }
+            }
+            return new Checkpoint(path, network, epoch, steps, optimizer, state);
+        }
+    }
+
+    /**
+     * Find the newest checkpoint a {@link Checkpointer} wrote to a directory.
+     *
+     * @param directory the directory of the checkpoints
+     * @return the path of the checkpoint with the highest number, or null if there is none
+     * @throws IOException when the directory cannot be listed
+     */
+    public static Path latest(Path directory) throws IOException {
+        List<Path> checkpoints = list(directory);
+        return checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+    }
+
+    /**
+     * Find the checkpoint of the best weights a {@link Checkpointer} wrote to a directory.
+     *
+     * @param directory the directory of the checkpoints
+     * @return the path of the best checkpoint, or null if there is none
+     */
+    public static Path best(Path directory) {
+        Path best = directory.resolve(BEST);
+        return Files.isRegularFile(best) ? best : null;
+    }
+
+    /**
+     * @return the file the checkpoint was read from
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * @return the network with the weights of the checkpoint
+     */
+    public Network getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * @return the number of epochs trained when the checkpoint was taken
+     */
+    public long getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * @return the number of steps the optimizer had taken
+     */
+    public long getSteps() {
+        return this.steps;
+    }
+
+    /**
+     * @return the class name of the optimizer
+     */
+    public String getOptimizer() {
+        return this.optimizer;
+    }
+
+    /**
+     * Copy the weights of the checkpoint into the network of a trainer and restore the state of its optimizer, so
+     * training continues where the checkpoint was taken.
+     *
+     * @param trainer the trainer to restore, with a network of the same shape and an optimizer of the same class
+     */
+    public void restore(Trainer trainer) {
+        Optimizer optimizer = trainer.getOptimizer();
+        if (!optimizer.getClass().getName().equals(this.optimizer))
+            throw new IllegalArgumentException("Checkpoint was taken with optimizer " + this.optimizer + ".");
+        new Parameters(this.network).copyTo(trainer.getNetwork());
+        if (this.optimizerState.length == 0) optimizer.reset();
+        else optimizer.restore(trainer.getNetwork(), this.steps, this.optimizerState);
+    }
+
+    /**
+     * Write a checkpoint to a channel.
+     */
+    static void write(WritableByteChannel channel, Network network, long epoch, long steps, String optimizer, int slots, double[][] state) throws IOException {
+        long written = ModelFile.write(network, channel, DataType.FLOAT64);
+        if (written % 8 != 0) throw new IllegalStateException("Model file does not end at a multiple of 8 bytes.");
+
+        byte[] name = optimizer.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(STATE_HEADER_BYTES + (int) align(name.length)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(epoch).putLong(steps).putInt(slots).putInt(name.length).put(name);
+        header.position(header.limit()).flip();
+        writeFully(channel, header);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        for (double[] values : state) {
+            for (int i = 0; i < values.length; ) {
+                int count = Math.min(values.length - i, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(values, i, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                i += count;
+                if (buffer.remaining() < Double.BYTES) {
+                    writeFully(channel, buffer.flip());
+                    buffer.clear();
+                }
+            }
+        }
+        writeFully(channel, buffer.flip());
+    }
+
+    /**
+     * @return the checkpoints in a directory, ordered from the oldest to the newest
+     */
+    static List<Path> list(Path directory) throws IOException {
+        List<Path> checkpoints = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return checkpoints;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> NAME.matcher(file.getFileName().toString()).matches()).forEach(checkpoints::add);
+        }
+        checkpoints.sort((a, b) -> Long.compare(number(a), number(b)));
+        return checkpoints;
+    }
+
+    /**
+     * @return the number of a checkpoint file
+     */
+    static long number(Path checkpoint) {
+        Matcher matcher = NAME.matcher(checkpoint.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * @return the file name of the checkpoint with the given number
+     */
+    static String name(long number) {
+        return String.format("%s%010d%s", PREFIX, number, SUFFIX);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Checkpoint is truncated.");
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,299 @@
+package ch.sthomas.neuralnetwork.training;
+
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.Parameters;
+import ch.sthomas.neuralnetwork.optimizer.Optimizer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Writes {@link Checkpoint}s of a training run in the background. Taking a checkpoint only copies the weights and the
+ * optimizer state into one of two snapshot buffers on the training thread; a background thread writes the snapshot to
+ * a temporary file and renames it atomically, so a crash never leaves a half-written checkpoint behind. If a snapshot
+ * is still waiting to be written when the next one is taken, the newer one replaces it, so training never waits for
+ * the disk. Only the newest checkpoints are kept.
+ * <p>
+ * Independently of the numbered checkpoints, {@link #checkpointBest(Trainer, long)} keeps the weights of the best
+ * epoch in its own file, which is replaced by every newer best checkpoint and never deleted.
+ *
+ * @see Checkpoint#latest(Path)
+ * @see Checkpoint#best(Path)
+ * @see Checkpoint#restore(Trainer)
+ */
+public class Checkpointer implements AutoCloseable {
+    private final Path directory;
+    private final int keep;
+    private final long intervalNanos;
+    private final Thread writer;
+    private final Snapshot[] buffers = new Snapshot[2];
+    private final Snapshot[] bestBuffers = new Snapshot[2];
+    private long nextNumber;
+    private long lastCheckpoint;
+
+    /**
+     * Guarded by this: the snapshots waiting to be written, the one being written and the first failure of the writer
+     */
+    private Snapshot pending;
+    private Snapshot pendingBest;
+    private Snapshot writing;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * The copy of the weights and the optimizer state of one checkpoint, with a network viewing the copied weights.
+     */
+    private static final class Snapshot {
+        private final Parameters parameters;
+        private final Network network;
+        private final boolean best;
+        private double[][] state = new double[0][];
+        private long epoch;
+        private long steps;
+        private String optimizer;
+        private int slots;
+
+        private Snapshot(Network source, boolean best) {
+            this.best = best;
+            this.parameters = new Parameters(source);
+            Layer[] layers = source.getLayers();
+            Layer[] copies = new Layer[layers.length];
+            for (int i = 0; i < layers.length; i++) {
+                copies[i] = new Layer(layers[i].getInputs(), layers[i].getOutputs(), this.parameters.getWeights(i),
+                        this.parameters.getBiases(i), layers[i].getActivation());
+            }
+            this.network = new Network(copies);
+        }
+
+        private void copyFrom(Network network, Optimizer optimizer, long epoch) {
+            this.parameters.copyFrom(network);
+            double[][] state = optimizer.getState();
+            if (this.state.length != state.length) this.state = new double[state.length][];
+            for (int i = 0; i < state.length; i++) {
+                if (this.state[i] == null || this.state[i].length != state[i].length) this.state[i] = state[i].clone();
+                else System.arraycopy(state[i], 0, this.state[i], 0, state[i].length);
+            }
+            this.epoch = epoch;
+            this.steps = optimizer.getSteps();
+            this.optimizer = optimizer.getClass().getName();
+            this.slots = optimizer.getStateSlots();
+        }
+    }
+
+    /**
+     * Create a new Checkpointer taking a checkpoint whenever {@link #checkpoint(Trainer, long)} is called, and start
+     * its background thread.
+     *
+     * @param directory the directory to write the checkpoints to, created if it does not exist
+     * @param keep      the number of newest checkpoints to keep, at least 1
+     * @throws IOException when the directory cannot be created or listed
+     */
+    public Checkpointer(Path directory, int keep) throws IOException {
+        this(directory, keep, Duration.ZERO);
+    }
+
+    /**
+     * Create a new Checkpointer and start its background thread.
+     *
+     * @param directory the directory to write the checkpoints to, created if it does not exist
+     * @param keep      the number of newest checkpoints to keep, at least 1
+     * @param interval  the minimum time between two checkpoints, calls of {@link #checkpoint(Trainer, long)} in
+     *                  between are ignored
+     * @throws IOException when the directory cannot be created or listed
+     */
+    public Checkpointer(Path directory, int keep, Duration interval) throws IOException {
+        if (keep < 1) throw new IllegalArgumentException("At least one checkpoint must be kept.");
+        this.directory = directory;
+        this.keep = keep;
+        this.intervalNanos = interval.toNanos();
+        Files.createDirectories(directory);
+        Path latest = Checkpoint.latest(directory);
+        this.nextNumber = latest == null ? 0 : Checkpoint.number(latest) + 1;
+        this.lastCheckpoint = System.nanoTime() - this.intervalNanos;
+
+        this.writer = new Thread(this::run, "checkpointer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Take a checkpoint of the trainer's network and optimizer unless the last one was taken less than the interval
+     * ago. Only copies the weights and state, they are written in the background.
+     *
+     * @param trainer the trainer to checkpoint
+     * @param epoch   the number of epochs trained so far
+     * @return true if a checkpoint was taken
+     * @throws IOException when writing an earlier checkpoint failed
+     */
+    public boolean checkpoint(Trainer trainer, long epoch) throws IOException {
+        long now = System.nanoTime();
+        if (now - this.lastCheckpoint < this.intervalNanos) {
+            this.checkFailure();
+            return false;
+        }
+        this.take(trainer, epoch, false);
+        this.lastCheckpoint = now;
+        return true;
+    }
+
+    /**
+     * Take a checkpoint of the best weights so far, regardless of the interval. It replaces the previous best
+     * checkpoint and is not counted among the checkpoints to keep. Only copies the weights and state, they are written
+     * in the background.
+     *
+     * @param trainer the trainer to checkpoint, with the weights of its best epoch so far
+     * @param epoch   the number of epochs trained so far
+     * @throws IOException when writing an earlier checkpoint failed
+     */
+    public void checkpointBest(Trainer trainer, long epoch) throws IOException {
+        this.take(trainer, epoch, true);
+    }
+
+    private void take(Trainer trainer, long epoch, boolean best) throws IOException {
+        Snapshot snapshot;
+        synchronized (this) {
+            this.checkFailure();
+            if (this.closed) throw new IllegalStateException("Checkpointer is closed.");
+            // Reuse the snapshot still waiting to be written, otherwise the buffer the writer is not using
+            Snapshot[] buffers = best ? this.bestBuffers : this.buffers;
+            snapshot = best ? this.pendingBest : this.pending;
+            if (best) this.pendingBest = null;
+            else this.pending = null;
+            if (snapshot == null) {
+                int free = buffers[0] != null && buffers[0] == this.writing ? 1 : 0;
+                if (buffers[free] == null) buffers[free] = new Snapshot(trainer.getNetwork(), best);
+                snapshot = buffers[free];
+            }
+        }
+        snapshot.copyFrom(trainer.getNetwork(), trainer.getOptimizer(), epoch);
+        synchronized (this) {
+            if (best) this.pendingBest = snapshot;
+            else this.pending = snapshot;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until every checkpoint taken so far is written.
+     *
+     * @throws IOException when writing a checkpoint failed
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public synchronized void flush() throws IOException, InterruptedException {
+        while ((this.pending != null || this.pendingBest != null || this.writing != null) && this.failure == null) {
+            this.wait();
+        }
+        this.checkFailure();
+    }
+
+    /**
+     * Write the checkpoint still waiting, if any, and stop the background thread.
+     *
+     * @throws IOException when writing a checkpoint failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed) return;
+            this.closed = true;
+            this.notifyAll();
+        }
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            this.checkFailure();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException failure;
+        synchronized (this) {
+            failure = this.failure;
+        }
+        if (failure != null) throw new IOException("Writing a checkpoint failed.", failure);
+    }
+
+    private void run() {
+        while (true) {
+            Snapshot snapshot;
+            synchronized (this) {
+                while (this.pending == null && this.pendingBest == null && !this.closed) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (this.pending != null) {
+                    snapshot = this.pending;
+                    this.pending = null;
+                } else if (this.pendingBest != null) {
+                    snapshot = this.pendingBest;
+                    this.pendingBest = null;
+                } else {
+                    return;
+                }
+                this.writing = snapshot;
+            }
+
+            IOException failure = null;
+            try {
+                this.write(snapshot);
+            } catch (IOException e) {
+                failure = e;
+            }
+            synchronized (this) {
+                this.writing = null;
+                if (failure != null && this.failure == null) this.failure = failure;
+                this.notifyAll();
+            }
+        }
+    }
+
+    private void write(Snapshot snapshot) throws IOException {
+        Path target = this.directory.resolve(snapshot.best ? Checkpoint.BEST : Checkpoint.name(this.nextNumber++));
+        Path temporary = this.directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Checkpoint.write(channel, snapshot.network, snapshot.epoch, snapshot.steps, snapshot.optimizer, snapshot.slots, snapshot.state);
+            // The contents must be on disk before the rename can make them visible
+            channel.force(true);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.forceDirectory();
+        if (snapshot.best) return;
+
+        List<Path> checkpoints = Checkpoint.list(this.directory);
+        for (int i = 0; i < checkpoints.size() - this.keep; i++) Files.deleteIfExists(checkpoints.get(i));
+    }
+
+    /**
+     * Write the directory entries to disk, so a renamed checkpoint survives a crash.
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(this.directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Not every platform can open a directory, there the file system decides when the rename is durable
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ch.sthomas.neuralnetwork.training;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Writes the metrics of every epoch, and optionally of every batch, as lines of comma separated values. Batch lines
+ * have the epoch and batch index, epoch lines have an empty batch column:
+ * <pre>
+ * epoch,batch,samples,loss,samples_per_second,forward_ms,backward_ms,update_ms,gradient_norm,allocated_bytes
+ * </pre>
+ * The gradient norm of an epoch line is empty, it is only measured per batch.
+ */
+public class CsvTrainingListener implements TrainingListener {
+    /**
+     * The first line written, naming the columns.
+     */
+    public static final String HEADER = "epoch,batch,samples,loss,samples_per_second,forward_ms,backward_ms,update_ms,gradient_norm,allocated_bytes";
+
+    private final Appendable out;
+    private final boolean batches;
+    private boolean headerWritten;
+
+    /**
+     * Create a new listener writing one line per epoch.
+     *
+     * @param out where to write the lines to, for example {@link System#out} or a {@link java.io.Writer}
+     */
+    public CsvTrainingListener(Appendable out) {
+        this(out, false);
+    }
+
+    /**
+     * Create a new listener.
+     *
+     * @param out     where to write the lines to, for example {@link System#out} or a {@link java.io.Writer}
+     * @param batches true to also write one line per batch
+     */
+    public CsvTrainingListener(Appendable out, boolean batches) {
+        this.out = out;
+        this.batches = batches;
+    }
+
+    @Override
+    public void batchCompleted(BatchMetrics metrics) {
+        if (!this.batches) return;
+        this.write(String.format(Locale.ROOT, "%d,%d,%d,%.6g,%.1f,%.3f,%.3f,%.3f,%.6g,%d",
+                metrics.epoch(), metrics.batch(), metrics.samples(), metrics.loss(), metrics.samplesPerSecond(),
+                metrics.forwardNanos() / 1e6, metrics.backwardNanos() / 1e6, metrics.updateNanos() / 1e6,
+                metrics.gradientNorm(), metrics.allocatedBytes()));
+    }
+
+    @Override
+    public void epochCompleted(EpochMetrics metrics) {
+        this.write(String.format(Locale.ROOT, "%d,,%d,%.6g,%.1f,%.3f,%.3f,%.3f,,%d",
+                metrics.epoch(), metrics.samples(), metrics.loss(), metrics.samplesPerSecond(),
+                metrics.forwardNanos() / 1e6, metrics.backwardNanos() / 1e6, metrics.updateNanos() / 1e6,
+                metrics.allocatedBytes()));
+    }
+
+    private void write(String line) {
+        try {
+            if (!this.headerWritten) {
+                this.out.append(HEADER).append(System.lineSeparator());
+                this.headerWritten = true;
+            }
+            this.out.append(line).append(System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ch.sthomas.neuralnetwork.training;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of training samples that is read once per epoch. Samples are copied into buffers owned by the caller, so
+ * a source does not need to hold more than the sample currently read in memory.
+ */
+public interface DataSource extends Closeable {
+    /**
+     * @return the length of the input vector of every sample
+     */
+    int getInputSize();
+
+    /**
+     * @return the length of the expected output vector of every sample
+     */
+    int getOutputSize();
+
+    /**
+     * Start a new pass over the samples. Called before every epoch.
+     *
+     * @throws IOException when the underlying data cannot be read
+     */
+    void rewind() throws IOException;
+
+    /**
+     * Copy the next sample of the current pass into the given buffers.
+     *
+     * @param input    the buffer for the input, of length {@link #getInputSize()}
+     * @param expected the buffer for the expected output, of length {@link #getOutputSize()}
+     * @return false if the current pass has no more samples, in which case the buffers are unchanged
+     * @throws IOException when the underlying data cannot be read
+     */
+    boolean next(double[] input, double[] expected) throws IOException;
+
+    /**
+     * Release the resources held by this source. Does nothing by default.
+     *
+     * @throws IOException when the underlying data cannot be closed
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
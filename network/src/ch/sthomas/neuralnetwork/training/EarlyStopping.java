@@ -0,0 +1,159 @@
+package ch.sthomas.neuralnetwork.training;
+
+import ch.sthomas.neuralnetwork.Parameters;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Trains with a {@link Trainer} epoch by epoch until a stopping criterion is met: the loss reaches a target, the loss
+ * did not improve for a number of epochs (the patience), a maximum number of epochs or a wall-clock budget. The loss
+ * is the average cost of a validation set if one is set, otherwise the training loss of the epoch. Without further
+ * criteria, training stops after {@link #DEFAULT_MAX_EPOCHS} epochs.
+ * <p>
+ * The weights of the epoch with the lowest loss are kept in memory and restored when training stops, unless
+ * {@link #setRestoreBestWeights(boolean)} is turned off. With a {@link #setCheckpointer(Checkpointer) checkpointer}
+ * they are also written to its best checkpoint whenever the loss improves, so they survive a crash.
+ */
+public class EarlyStopping {
+    /**
+     * The maximum number of epochs unless {@link #setMaxEpochs(int)} is called, so a run always ends
+     */
+    public static final int DEFAULT_MAX_EPOCHS = 1000;
+
+    private double targetLoss = 0.0;
+    private int maxEpochs = DEFAULT_MAX_EPOCHS;
+    private Duration timeBudget;
+    private DataSource validation;
+    private int patience = Integer.MAX_VALUE;
+    private double minImprovement = 0.0;
+    private boolean restoreBestWeights = true;
+    private Checkpointer checkpointer;
+
+    /**
+     * Stop as soon as the loss is at or below a target.
+     *
+     * @param targetLoss the loss to reach, 0 to train until another criterion is met
+     */
+    public void setTargetLoss(double targetLoss) {
+        this.targetLoss = targetLoss;
+    }
+
+    /**
+     * @param maxEpochs the maximum number of epochs to train, at least 1, {@link #DEFAULT_MAX_EPOCHS} by default
+     */
+    public void setMaxEpochs(int maxEpochs) {
+        if (maxEpochs < 1) throw new IllegalArgumentException("Max epochs must be at least 1.");
+        this.maxEpochs = maxEpochs;
+    }
+
+    /**
+     * Stop when the time since the start of training exceeds a budget. The budget is checked after every epoch, so a
+     * run can exceed it by up to one epoch.
+     *
+     * @param timeBudget the wall-clock budget, null for none
+     */
+    public void setTimeBudget(Duration timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Evaluate the loss on a validation set after every epoch instead of using the training loss.
+     *
+     * @param validation the samples to evaluate, not used for training, null to use the training loss
+     * @see Trainer#evaluate(DataSource)
+     */
+    public void setValidation(DataSource validation) {
+        this.validation = validation;
+    }
+
+    /**
+     * Stop when the loss did not improve by more than {@code minImprovement} for {@code patience} epochs.
+     *
+     * @param patience       the number of epochs without improvement to tolerate, at least 1
+     * @param minImprovement the amount the loss must drop below the best loss to count as an improvement
+     */
+    public void setPatience(int patience, double minImprovement) {
+        if (patience < 1) throw new IllegalArgumentException("Patience must be at least 1.");
+        this.patience = patience;
+        this.minImprovement = minImprovement;
+    }
+
+    /**
+     * @param restoreBestWeights true to restore the weights of the epoch with the lowest loss when training stops,
+     *                           false to keep the weights of the last epoch
+     */
+    public void setRestoreBestWeights(boolean restoreBestWeights) {
+        this.restoreBestWeights = restoreBestWeights;
+    }
+
+    /**
+     * Take a checkpoint after every epoch and a {@link Checkpointer#checkpointBest(Trainer, long) best checkpoint}
+     * after every epoch that lowers the best loss. The checkpointer decides how often a regular checkpoint is actually
+     * written, best checkpoints are always written.
+     *
+     * @param checkpointer the checkpointer, null for none
+     */
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Train until a stopping criterion is met.
+     *
+     * @param trainer the trainer to train with
+     * @param source  the source of the training samples
+     * @return why and after how many epochs training stopped, and the best loss
+     * @throws IOException when a source cannot be read
+     */
+    public TrainingResult train(Trainer trainer, DataSource source) throws IOException {
+        long start = System.nanoTime();
+        long budget = this.timeBudget != null ? this.timeBudget.toNanos() : Long.MAX_VALUE;
+
+        Parameters best = null;
+        double bestLoss = Double.POSITIVE_INFINITY;
+        int bestEpoch = -1;
+        // The loss an epoch must improve on by more than minImprovement to reset the patience
+        double referenceLoss = Double.POSITIVE_INFINITY;
+        int lastImprovement = -1;
+        double trainingLoss = Double.NaN;
+        int epoch = 0;
+        StopReason reason;
+        while (true) {
+            trainingLoss = trainer.train(source, 1);
+            double loss = this.validation != null ? trainer.evaluate(this.validation) : trainingLoss;
+            if (loss < bestLoss) {
+                bestLoss = loss;
+                bestEpoch = epoch;
+                if (this.restoreBestWeights) {
+                    if (best == null) best = new Parameters(trainer.getNetwork());
+                    else best.copyFrom(trainer.getNetwork());
+                }
+                if (this.checkpointer != null) this.checkpointer.checkpointBest(trainer, epoch + 1);
+            }
+            if (loss < referenceLoss - this.minImprovement) {
+                referenceLoss = loss;
+                lastImprovement = epoch;
+            }
+            epoch++;
+            if (this.checkpointer != null) this.checkpointer.checkpoint(trainer, epoch);
+
+            if (bestLoss <= this.targetLoss) {
+                reason = StopReason.TARGET_LOSS;
+                break;
+            } else if (epoch - 1 - lastImprovement >= this.patience) {
+                reason = StopReason.PATIENCE;
+                break;
+            } else if (epoch >= this.maxEpochs) {
+                reason = StopReason.MAX_EPOCHS;
+                break;
+            } else if (System.nanoTime() - start >= budget) {
+                reason = StopReason.TIME_BUDGET;
+                break;
+            }
+        }
+
+        if (best != null) best.copyTo(trainer.getNetwork());
+        return new TrainingResult(reason, epoch, trainingLoss, bestLoss, bestEpoch);
+    }
+}
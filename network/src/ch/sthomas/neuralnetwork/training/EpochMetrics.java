@@ -0,0 +1,22 @@
+package ch.sthomas.neuralnetwork.training;
+
+/**
+ * What was measured while training for one epoch, the sums of the epoch's {@link BatchMetrics}.
+ * <p>
+ * Like the batch metrics the forward and backward times are summed over the workers, so with a parallelism above 1
+ * they can add up to more than the elapsed time, while the update time is elapsed time on the calling thread.
+ *
+ * @param epoch            the index of the epoch, starting at 0
+ * @param batches          the number of batches of the epoch
+ * @param samples          the number of samples of the epoch
+ * @param loss             the average cost per sample, each measured before its batch's update
+ * @param samplesPerSecond the samples of the epoch divided by the time the whole epoch took
+ * @param forwardNanos     the nanoseconds the workers spent in forward passes, summed
+ * @param backwardNanos    the nanoseconds the workers spent in backward passes, summed
+ * @param updateNanos      the elapsed nanoseconds of updating the weights
+ * @param allocatedBytes   the bytes the calling thread and the workers allocated during the epoch, -1 if the JVM cannot
+ *                         measure allocations
+ */
+public record EpochMetrics(int epoch, long batches, long samples, double loss, double samplesPerSecond,
+                           long forwardNanos, long backwardNanos, long updateNanos, long allocatedBytes) {
+}
@@ -0,0 +1,54 @@
+package ch.sthomas.neuralnetwork.training;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * A {@link DataSource} reading the samples from iterators, for example over a stream of rows that are produced or
+ * read lazily. A new iterator is requested for every epoch.
+ */
+public class IteratorDataSource implements DataSource {
+    private final int inputSize;
+    private final int outputSize;
+    private final Supplier<? extends Iterator<Sample>> samples;
+    private Iterator<Sample> iterator;
+
+    /**
+     * Create a new source.
+     *
+     * @param inputSize  the length of the input vector of every sample
+     * @param outputSize the length of the expected output vector of every sample
+     * @param samples    supplies a new iterator over all samples for every epoch
+     */
+    public IteratorDataSource(int inputSize, int outputSize, Supplier<? extends Iterator<Sample>> samples) {
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.samples = samples;
+    }
+
+    @Override
+    public int getInputSize() {
+        return this.inputSize;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return this.outputSize;
+    }
+
+    @Override
+    public void rewind() {
+        this.iterator = this.samples.get();
+    }
+
+    @Override
+    public boolean next(double[] input, double[] expected) {
+        if (this.iterator == null || !this.iterator.hasNext()) return false;
+        Sample sample = this.iterator.next();
+        if (sample.input().length != this.inputSize || sample.expected().length != this.outputSize)
+            throw new IllegalArgumentException("Sample does not match the input and output size of the data source.");
+        System.arraycopy(sample.input(), 0, input, 0, this.inputSize);
+        System.arraycopy(sample.expected(), 0, expected, 0, this.outputSize);
+        return true;
+    }
+}
@@ -0,0 +1,112 @@
+package ch.sthomas.neuralnetwork.training;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the metrics as Java Flight Recorder events, {@code ch.sthomas.neuralnetwork.TrainingBatch} and
+ * {@code ch.sthomas.neuralnetwork.TrainingEpoch}, so they can be shown next to the GC and CPU samples of a recording.
+ * When no recording has the events enabled they are dropped without being filled in.
+ */
+public class JfrTrainingListener implements TrainingListener {
+    @Name("ch.sthomas.neuralnetwork.TrainingBatch")
+    @Label("Training Batch")
+    @Category({"Neural Network", "Training"})
+    @Description("The metrics of one training batch")
+    @StackTrace(false)
+    static class BatchEvent extends Event {
+        @Label("Epoch")
+        int epoch;
+        @Label("Batch")
+        long batch;
+        @Label("Samples")
+        int samples;
+        @Label("Loss")
+        double loss;
+        @Label("Samples per Second")
+        double samplesPerSecond;
+        @Label("Forward Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long forward;
+        @Label("Backward Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long backward;
+        @Label("Update Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long update;
+        @Label("Gradient Norm")
+        double gradientNorm;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("ch.sthomas.neuralnetwork.TrainingEpoch")
+    @Label("Training Epoch")
+    @Category({"Neural Network", "Training"})
+    @Description("The metrics of one training epoch")
+    @StackTrace(false)
+    static class EpochEvent extends Event {
+        @Label("Epoch")
+        int epoch;
+        @Label("Batches")
+        long batches;
+        @Label("Samples")
+        long samples;
+        @Label("Loss")
+        double loss;
+        @Label("Samples per Second")
+        double samplesPerSecond;
+        @Label("Forward Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long forward;
+        @Label("Backward Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long backward;
+        @Label("Update Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long update;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Override
+    public void batchCompleted(BatchMetrics metrics) {
+        BatchEvent event = new BatchEvent();
+        if (!event.isEnabled()) return;
+        event.epoch = metrics.epoch();
+        event.batch = metrics.batch();
+        event.samples = metrics.samples();
+        event.loss = metrics.loss();
+        event.samplesPerSecond = metrics.samplesPerSecond();
+        event.forward = metrics.forwardNanos();
+        event.backward = metrics.backwardNanos();
+        event.update = metrics.updateNanos();
+        event.gradientNorm = metrics.gradientNorm();
+        event.allocated = metrics.allocatedBytes();
+        event.commit();
+    }
+
+    @Override
+    public void epochCompleted(EpochMetrics metrics) {
+        EpochEvent event = new EpochEvent();
+        if (!event.isEnabled()) return;
+        event.epoch = metrics.epoch();
+        event.batches = metrics.batches();
+        event.samples = metrics.samples();
+        event.loss = metrics.loss();
+        event.samplesPerSecond = metrics.samplesPerSecond();
+        event.forward = metrics.forwardNanos();
+        event.backward = metrics.backwardNanos();
+        event.update = metrics.updateNanos();
+        event.allocated = metrics.allocatedBytes();
+        event.commit();
+    }
+}
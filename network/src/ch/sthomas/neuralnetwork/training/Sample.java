@@ -0,0 +1,10 @@
+package ch.sthomas.neuralnetwork.training;
+
+/**
+ * A single training sample.
+ *
+ * @param input    the input to the network
+ * @param expected the output the network should produce for the input
+ */
+public record Sample(double[] input, double[] expected) {
+}
@@ -0,0 +1,74 @@
+package ch.sthomas.neuralnetwork.training;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Shuffles the samples of another {@link DataSource} that is too large to be held in memory. The samples are read
+ * into a buffer of fixed size and every sample returned is picked at random from the buffer, then replaced with the
+ * next sample of the underlying source. The larger the buffer, the closer the order is to a full shuffle.
+ */
+public class ShufflingDataSource implements DataSource {
+    private final DataSource source;
+    private final SplittableRandom random;
+    private final double[][] inputs;
+    private final double[][] expected;
+    private int buffered;
+
+    /**
+     * Create a new shuffling source.
+     *
+     * @param source     the source to shuffle the samples of
+     * @param bufferSize the number of samples to pick from at random
+     * @param seed       the seed for shuffling, the same seed visits the samples in the same orders
+     */
+    public ShufflingDataSource(DataSource source, int bufferSize, long seed) {
+        if (bufferSize < 1) throw new IllegalArgumentException("Buffer size must be at least 1.");
+        this.source = source;
+        this.random = new SplittableRandom(seed);
+        this.inputs = new double[bufferSize][source.getInputSize()];
+        this.expected = new double[bufferSize][source.getOutputSize()];
+    }
+
+    @Override
+    public int getInputSize() {
+        return this.source.getInputSize();
+    }
+
+    @Override
+    public int getOutputSize() {
+        return this.source.getOutputSize();
+    }
+
+    @Override
+    public void rewind() throws IOException {
+        this.source.rewind();
+        this.buffered = 0;
+        while (this.buffered < this.inputs.length && this.source.next(this.inputs[this.buffered], this.expected[this.buffered])) {
+            this.buffered++;
+        }
+    }
+
+    @Override
+    public boolean next(double[] input, double[] expected) throws IOException {
+        if (this.buffered == 0) return false;
+        int sample = this.random.nextInt(this.buffered);
+        System.arraycopy(this.inputs[sample], 0, input, 0, input.length);
+        System.arraycopy(this.expected[sample], 0, expected, 0, expected.length);
+        // Refill the slot from the source, or move the last buffered sample into it once the source is exhausted
+        if (!this.source.next(this.inputs[sample], this.expected[sample])) {
+            this.buffered--;
+            double[] swapInput = this.inputs[sample], swapExpected = this.expected[sample];
+            this.inputs[sample] = this.inputs[this.buffered];
+            this.expected[sample] = this.expected[this.buffered];
+            this.inputs[this.buffered] = swapInput;
+            this.expected[this.buffered] = swapExpected;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.source.close();
+    }
+}
@@ -0,0 +1,88 @@
+package ch.sthomas.neuralnetwork.training;
+
+import ch.sthomas.neuralnetwork.SparseVector;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of training samples with sparse inputs, read once per epoch like a {@link DataSource}. Only the non-zero
+ * inputs of a sample are copied, so wide one-hot or hashed feature vectors never have to be expanded.
+ */
+public interface SparseDataSource extends Closeable {
+    /**
+     * @return the dimension of the input vector of every sample
+     */
+    int getInputSize();
+
+    /**
+     * @return the length of the expected output vector of every sample
+     */
+    int getOutputSize();
+
+    /**
+     * Start a new pass over the samples. Called before every epoch.
+     *
+     * @throws IOException when the underlying data cannot be read
+     */
+    void rewind() throws IOException;
+
+    /**
+     * Copy the next sample of the current pass into the given buffers.
+     *
+     * @param input    the buffer for the input, of dimension {@link #getInputSize()}, cleared by the source before the
+     *                 entries of the sample are added
+     * @param expected the buffer for the expected output, of length {@link #getOutputSize()}
+     * @return false if the current pass has no more samples, in which case the buffers are unchanged
+     * @throws IOException when the underlying data cannot be read
+     */
+    boolean next(SparseVector input, double[] expected) throws IOException;
+
+    /**
+     * Release the resources held by this source. Does nothing by default.
+     *
+     * @throws IOException when the underlying data cannot be closed
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Read the samples of a dense source as sparse samples, skipping the inputs that are 0.
+     *
+     * @param source the dense source, closed with the returned source
+     * @return a sparse view of the source
+     */
+    static SparseDataSource of(DataSource source) {
+        double[] dense = new double[source.getInputSize()];
+        return new SparseDataSource() {
+            @Override
+            public int getInputSize() {
+                return source.getInputSize();
+            }
+
+            @Override
+            public int getOutputSize() {
+                return source.getOutputSize();
+            }
+
+            @Override
+            public void rewind() throws IOException {
+                source.rewind();
+            }
+
+            @Override
+            public boolean next(SparseVector input, double[] expected) throws IOException {
+                if (!source.next(dense, expected)) return false;
+                input.clear();
+                for (int i = 0; i < dense.length; i++) if (dense[i] != 0.0) input.add(i, dense[i]);
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package ch.sthomas.neuralnetwork.training;
+
+/**
+ * Why {@link EarlyStopping} ended a training run.
+ */
+public enum StopReason {
+    /**
+     * The loss reached the target loss.
+     */
+    TARGET_LOSS,
+    /**
+     * The loss did not improve for the configured number of epochs.
+     */
+    PATIENCE,
+    /**
+     * The maximum number of epochs was trained.
+     */
+    MAX_EPOCHS,
+    /**
+     * The wall-clock budget was used up.
+     */
+    TIME_BUDGET
+}
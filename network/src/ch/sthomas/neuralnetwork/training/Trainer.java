@@ -0,0 +1,459 @@
+package ch.sthomas.neuralnetwork.training;
+
+import ch.sthomas.neuralnetwork.Backpropagation;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.Neuron;
+import ch.sthomas.neuralnetwork.SparseVector;
+import ch.sthomas.neuralnetwork.optimizer.LearningRateSchedule;
+import ch.sthomas.neuralnetwork.optimizer.Optimizer;
+import ch.sthomas.neuralnetwork.optimizer.Sgd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Trains a {@link Network} in mini-batches pulled from a {@link DataSource}. The gradients are summed over every batch
+ * and the weights are updated once per batch by an {@link Optimizer}, so only one batch of samples is held in memory
+ * at a time.
+ * <p>
+ * With a parallelism above 1 every batch is split into contiguous chunks, one per worker. Every worker sums the
+ * gradients of its chunk into its own buffers and the buffers are then added in the order of the chunks, so the result
+ * only depends on the batch size and the parallelism, not on the scheduling of the threads.
+ * <p>
+ * {@link TrainingListener}s receive the loss, throughput, time split, gradient norm and allocations of every batch and
+ * epoch. Without listeners none of them is measured.
+ */
+public class Trainer {
+    /**
+     * The default number of samples per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    private final Network network;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private Optimizer optimizer = new Sgd();
+    private LearningRateSchedule learningRateSchedule = LearningRateSchedule.constant(Neuron.TRAINING_ALPHA);
+    private int parallelism = 1;
+    private Executor executor = ForkJoinPool.commonPool();
+    private final List<TrainingListener> listeners = new ArrayList<>();
+
+    /**
+     * Create a new Trainer for the given network.
+     *
+     * @param network the network to train
+     */
+    public Trainer(Network network) {
+        this.network = network;
+    }
+
+    /**
+     * @return the network that is trained
+     */
+    public Network getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * Set the number of samples the gradients are summed over before the weights are updated.
+     *
+     * @param batchSize the number of samples per batch, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1.");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the factor the average gradient of a batch is multiplied with before it is subtracted, the same for every
+     * step.
+     *
+     * @param learningRate the learning rate
+     * @see #setLearningRateSchedule(LearningRateSchedule)
+     */
+    public void setLearningRate(double learningRate) {
+        this.learningRateSchedule = LearningRateSchedule.constant(learningRate);
+    }
+
+    /**
+     * Set the learning rate of every step. The steps are counted by the optimizer, so they continue across calls of
+     * {@link #train(DataSource, int)}.
+     *
+     * @param learningRateSchedule the learning rate per step
+     */
+    public void setLearningRateSchedule(LearningRateSchedule learningRateSchedule) {
+        this.learningRateSchedule = learningRateSchedule;
+    }
+
+    /**
+     * Set the optimizer updating the weights after every batch. Defaults to plain gradient descent.
+     *
+     * @param optimizer the optimizer, only used for the network of this trainer
+     */
+    public void setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * @return the optimizer updating the weights after every batch
+     */
+    public Optimizer getOptimizer() {
+        return this.optimizer;
+    }
+
+    /**
+     * Set the number of workers every batch is split across. The result of training is reproducible for the same
+     * parallelism, but may differ slightly between different parallelisms as the sums are added in another order.
+     *
+     * @param parallelism the number of workers, 1 to calculate every batch on the calling thread
+     * @see #setExecutor(Executor)
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the executor running the workers if the parallelism is above 1. Defaults to the common
+     * {@link ForkJoinPool}.
+     *
+     * @param executor the executor for the workers
+     * @see #setParallelism(int)
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Add a listener receiving the metrics of every batch and epoch.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(TrainingListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeListener(TrainingListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Train the network for a number of epochs, each a full pass over the {@code source}.
+     *
+     * @param source the source of the training samples
+     * @param epochs the number of passes over the source
+     * @return the average cost per sample of the last epoch, measured before every batch's update
+     * @throws IOException when the source cannot be read
+     */
+    public double train(DataSource source, int epochs) throws IOException {
+        this.check(source.getInputSize(), source.getOutputSize());
+        return this.train(new DenseBatch(source, this.batchSize), epochs);
+    }
+
+    /**
+     * Train the network for a number of epochs on samples with sparse inputs. The forward and backward pass of the
+     * first layer only touch the weights of the non-zero inputs, the optimizer still updates all weights once per
+     * batch.
+     *
+     * @param source the source of the training samples
+     * @param epochs the number of passes over the source
+     * @return the average cost per sample of the last epoch, measured before every batch's update
+     * @throws IOException when the source cannot be read
+     */
+    public double train(SparseDataSource source, int epochs) throws IOException {
+        this.check(source.getInputSize(), source.getOutputSize());
+        return this.train(new SparseBatch(source, this.batchSize), epochs);
+    }
+
+    private void check(int inputs, int outputs) {
+        Layer[] layers = this.network.getLayers();
+        if (inputs != this.network.getNrOfInputs() || outputs != layers[layers.length - 1].getOutputs())
+            throw new IllegalArgumentException("Data source does not match the inputs and outputs of the network.");
+    }
+
+    private double train(Batch samples, int epochs) throws IOException {
+        Backpropagation[] workers = new Backpropagation[this.parallelism];
+        for (int i = 0; i < workers.length; i++) workers[i] = new Backpropagation(this.network);
+        double[] costs = new double[workers.length];
+
+        TrainingListener[] listeners = this.listeners.toArray(new TrainingListener[0]);
+        boolean measured = listeners.length > 0;
+        for (Backpropagation worker : workers) worker.setTimed(measured);
+        long[] allocations = measured ? new long[workers.length] : null;
+
+        double cost = 0.0;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            samples.rewind();
+            cost = 0.0;
+            long read = 0;
+            Measurement measurement = measured ? new Measurement(epoch) : null;
+            int batch;
+            while ((batch = samples.fill()) > 0) {
+                if (measurement != null) measurement.batchStarted();
+                double batchCost = this.accumulate(workers, costs, allocations, samples, batch);
+                if (measurement != null) measurement.updateStarted();
+                double learningRate = this.learningRateSchedule.getLearningRate(this.optimizer.getSteps());
+                this.optimizer.apply(this.network, workers[0].getGradients(), learningRate);
+                if (measurement != null) measurement.batchCompleted(listeners, workers, allocations, batch, batchCost);
+                cost += batchCost;
+                read += batch;
+            }
+            cost = read > 0 ? cost / read : 0.0;
+            if (measurement != null) measurement.epochCompleted(listeners, read, cost);
+        }
+        return cost;
+    }
+
+    /**
+     * The clock and allocation readings of the current epoch, only created while listeners are added.
+     */
+    private static final class Measurement {
+        private final int epoch;
+        private final long epochStart = System.nanoTime();
+        private final long epochAllocations = Allocations.current();
+        private long batches;
+        private long batchStart;
+        private long batchAllocations;
+        private long updateStart;
+        private long forwardNanos;
+        private long backwardNanos;
+        private long updateNanos;
+        /**
+         * The bytes the workers allocated on other threads than the calling one
+         */
+        private long workerAllocations;
+
+        private Measurement(int epoch) {
+            this.epoch = epoch;
+        }
+
+        private void batchStarted() {
+            this.batchAllocations = Allocations.current();
+            this.batchStart = System.nanoTime();
+        }
+
+        private void updateStarted() {
+            this.updateStart = System.nanoTime();
+        }
+
+        private void batchCompleted(TrainingListener[] listeners, Backpropagation[] workers, long[] workerAllocations,
+                                    int samples, double cost) {
+            long end = System.nanoTime();
+            long allocations = Allocations.current();
+            // Only the workers that calculated this batch, the others still hold the times of an earlier one
+            long forward = 0, backward = 0, allocated = 0;
+            for (int k = 0, parts = parts(workers, samples); k < parts; k++) {
+                forward += workers[k].getForwardNanos();
+                backward += workers[k].getBackwardNanos();
+                allocated += workerAllocations[k];
+            }
+            long update = end - this.updateStart;
+            this.forwardNanos += forward;
+            this.backwardNanos += backward;
+            this.updateNanos += update;
+            this.workerAllocations += allocated;
+
+            BatchMetrics metrics = new BatchMetrics(this.epoch, this.batches++, samples, cost / samples,
+                    samples * 1e9 / Math.max(1, end - this.batchStart), forward, backward, update,
+                    workers[0].getGradients().getNorm() / samples,
+                    allocations >= 0 ? allocations - this.batchAllocations + allocated : -1);
+            for (TrainingListener listener : listeners) listener.batchCompleted(metrics);
+        }
+
+        private void epochCompleted(TrainingListener[] listeners, long samples, double loss) {
+            long allocations = Allocations.current();
+            EpochMetrics metrics = new EpochMetrics(this.epoch, this.batches, samples, loss,
+                    samples * 1e9 / Math.max(1, System.nanoTime() - this.epochStart),
+                    this.forwardNanos, this.backwardNanos, this.updateNanos,
+                    allocations >= 0 ? allocations - this.epochAllocations + this.workerAllocations : -1);
+            for (TrainingListener listener : listeners) listener.epochCompleted(metrics);
+        }
+    }
+
+    /**
+     * Calculate the average cost per sample of the network over a full pass of a source, without training.
+     *
+     * @param source the source of the samples, for example a validation set not used for training
+     * @return the average cost per sample
+     * @throws IOException when the source cannot be read
+     * @see Network#getCostValue(double[], double[])
+     */
+    public double evaluate(DataSource source) throws IOException {
+        double[] input = new double[source.getInputSize()];
+        double[] expected = new double[source.getOutputSize()];
+        double[] actual = new double[source.getOutputSize()];
+        source.rewind();
+        double cost = 0.0;
+        long samples = 0;
+        while (source.next(input, expected)) {
+            this.network.calculateOutputs(input, actual);
+            for (int j = 0; j < actual.length; j++) {
+                double difference = actual[j] - expected[j];
+                cost += difference * difference;
+            }
+            samples++;
+        }
+        return samples > 0 ? cost / samples : 0.0;
+    }
+
+    /**
+     * @return the number of workers a batch is split across
+     */
+    private static int parts(Backpropagation[] workers, int batch) {
+        return Math.min(workers.length, batch);
+    }
+
+    /**
+     * Sum the gradients of a batch into the gradients of the first worker.
+     *
+     * @param allocations the array to write the bytes every worker allocated on another thread than the calling one
+     *                    to, or null to not measure them
+     * @return the summed cost of the batch
+     */
+    private double accumulate(Backpropagation[] workers, double[] costs, long[] allocations, Batch samples, int batch) {
+        int parts = parts(workers, batch);
+        if (allocations != null) Arrays.fill(allocations, 0);
+        if (parts == 1) {
+            workers[0].clear();
+            double cost = 0.0;
+            for (int i = 0; i < batch; i++) cost += samples.accumulate(workers[0], i);
+            return cost;
+        }
+
+        Thread caller = Thread.currentThread();
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[parts];
+        for (int k = 0; k < parts; k++) {
+            int worker = k;
+            int from = batch * k / parts, to = batch * (k + 1) / parts;
+            tasks[k] = CompletableFuture.runAsync(() -> {
+                // The calling thread's allocations are measured by the caller
+                boolean measured = allocations != null && Thread.currentThread() != caller;
+                long start = measured ? Allocations.current() : 0;
+                Backpropagation backpropagation = workers[worker];
+                backpropagation.clear();
+                double cost = 0.0;
+                for (int i = from; i < to; i++) cost += samples.accumulate(backpropagation, i);
+                costs[worker] = cost;
+                if (measured) allocations[worker] = Allocations.current() - start;
+            }, this.executor);
+        }
+        join(tasks);
+
+        // Reduce into the first worker, every task adding one slice of all the other workers' gradients in order
+        for (int k = 0; k < parts; k++) {
+            int part = k;
+            tasks[k] = CompletableFuture.runAsync(() -> {
+                for (int worker = 1; worker < parts; worker++) {
+                    workers[0].getGradients().add(workers[worker].getGradients(), part, parts);
+                }
+            }, this.executor);
+        }
+        join(tasks);
+
+        double cost = 0.0;
+        for (int k = 0; k < parts; k++) cost += costs[k];
+        return cost;
+    }
+
+    private static void join(CompletableFuture<?>[] tasks) {
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * The buffers of one batch and the source they are filled from.
+     */
+    private interface Batch {
+        /**
+         * Start a new pass over the source.
+         */
+        void rewind() throws IOException;
+
+        /**
+         * Read the next batch from the source.
+         *
+         * @return the number of samples read, less than the batch size only at the end of an epoch
+         */
+        int fill() throws IOException;
+
+        /**
+         * Add the gradients of one sample of the batch to a worker.
+         *
+         * @return the cost of the sample
+         */
+        double accumulate(Backpropagation worker, int sample);
+    }
+
+    private static final class DenseBatch implements Batch {
+        private final DataSource source;
+        private final double[][] inputs;
+        private final double[][] expected;
+
+        private DenseBatch(DataSource source, int batchSize) {
+            this.source = source;
+            this.inputs = new double[batchSize][source.getInputSize()];
+            this.expected = new double[batchSize][source.getOutputSize()];
+        }
+
+        @Override
+        public void rewind() throws IOException {
+            this.source.rewind();
+        }
+
+        @Override
+        public int fill() throws IOException {
+            int read = 0;
+            while (read < this.inputs.length && this.source.next(this.inputs[read], this.expected[read])) read++;
+            return read;
+        }
+
+        @Override
+        public double accumulate(Backpropagation worker, int sample) {
+            return worker.accumulate(this.inputs[sample], this.expected[sample]);
+        }
+    }
+
+    private static final class SparseBatch implements Batch {
+        private final SparseDataSource source;
+        private final SparseVector[] inputs;
+        private final double[][] expected;
+
+        private SparseBatch(SparseDataSource source, int batchSize) {
+            this.source = source;
+            this.inputs = new SparseVector[batchSize];
+            for (int i = 0; i < batchSize; i++) this.inputs[i] = new SparseVector(source.getInputSize(), 16);
+            this.expected = new double[batchSize][source.getOutputSize()];
+        }
+
+        @Override
+        public void rewind() throws IOException {
+            this.source.rewind();
+        }
+
+        @Override
+        public int fill() throws IOException {
+            int read = 0;
+            while (read < this.inputs.length && this.source.next(this.inputs[read], this.expected[read])) read++;
+            return read;
+        }
+
+        @Override
+        public double accumulate(Backpropagation worker, int sample) {
+            return worker.accumulate(this.inputs[sample], this.expected[sample]);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ch.sthomas.neuralnetwork.training;
+
+/**
+ * Receives the metrics of a {@link Trainer}. The listeners are called on the thread training the network, between the
+ * batches, so a slow listener slows down training.
+ * <p>
+ * The metrics are only measured while at least one listener is added to the trainer.
+ *
+ * @see Trainer#addListener(TrainingListener)
+ */
+public interface TrainingListener {
+    /**
+     * Called after the weights were updated with the gradients of a batch.
+     *
+     * @param metrics the metrics of the batch
+     */
+    default void batchCompleted(BatchMetrics metrics) {
+    }
+
+    /**
+     * Called after the last batch of an epoch.
+     *
+     * @param metrics the metrics of the epoch
+     */
+    default void epochCompleted(EpochMetrics metrics) {
+    }
+}
@@ -0,0 +1,14 @@
+package ch.sthomas.neuralnetwork.training;
+
+/**
+ * The outcome of a training run of {@link EarlyStopping}.
+ *
+ * @param reason       why training stopped
+ * @param epochs       the number of epochs trained
+ * @param trainingLoss the average cost per sample of the training set during the last epoch
+ * @param bestLoss     the lowest loss the stopping criteria were evaluated on, the validation loss if a validation
+ *                     set is used, otherwise the training loss
+ * @param bestEpoch    the index of the epoch with the lowest loss, starting at 0
+ */
+public record TrainingResult(StopReason reason, int epochs, double trainingLoss, double bestLoss, int bestEpoch) {
+}
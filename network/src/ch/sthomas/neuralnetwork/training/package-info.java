@@ -0,0 +1,4 @@
+/**
+ * Classes for training a neural network in mini-batches from a source of samples.
+ */
+package ch.sthomas.neuralnetwork.training;
@@ -2,8 +2,14 @@ package ch.sthomas.neuralnetwork.worker;
 
 import ch.sthomas.neuralnetwork.MathUtils;
 import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.optimizer.Adam;
+import ch.sthomas.neuralnetwork.training.ArrayDataSource;
+import ch.sthomas.neuralnetwork.training.EarlyStopping;
+import ch.sthomas.neuralnetwork.training.Trainer;
+import ch.sthomas.neuralnetwork.training.TrainingResult;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Date;
 
@@ -19,10 +25,25 @@ public class Main {
         Network n = new Network(5, 5, new int[]{5, 5}, 5);
 
         System.out.println(formatInOutputs(new double[][]{inputs[0], inputs[1]}, new double[][]{n.calculateOutputs(inputs[0]), n.calculateOutputs(inputs[1])}));
-        for (int i = 0; i < 1_000_000; i++) {
-            n.train(inputs, inputs);
+        double[][] validation = MathUtils.getRandomDoubleArrays(200, 5);
+        Trainer trainer = new Trainer(n);
+        trainer.setOptimizer(new Adam());
+        trainer.setLearningRate(0.01);
+        EarlyStopping stopping = new EarlyStopping();
+        stopping.setTargetLoss(1e-4);
+        stopping.setValidation(new ArrayDataSource(validation, validation));
+        stopping.setPatience(200, 1e-7);
+        stopping.setMaxEpochs(100_000);
+        stopping.setTimeBudget(Duration.ofMinutes(10));
+        TrainingResult result;
+        try {
+            result = stopping.train(trainer, new ArrayDataSource(inputs, inputs));
+        } catch (IOException e) {
+            throw new AssertionError("Array data sources cannot fail.", e);
         }
         System.out.println("\n\n" + System.currentTimeMillis() + ": " + new Date());
+        System.out.println("Stopped after " + result.epochs() + " epochs (" + result.reason() + "), best validation loss "
+                + result.bestLoss() + " in epoch " + result.bestEpoch());
         System.out.println(formatInOutputs(new double[][]{inputs[0], inputs[1]}, new double[][]{n.calculateOutputs(inputs[0]), n.calculateOutputs(inputs[1])}));
 
         try {
@@ -0,0 +1,119 @@
+package ch.sthomas.neuralnetwork.data;
+
+import ch.sthomas.neuralnetwork.io.DataType;
+import ch.sthomas.neuralnetwork.training.ArrayDataSource;
+import ch.sthomas.neuralnetwork.training.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes samples with {@link BinaryDataSource#write(DataSource, Path, DataType)} and reads them back through windows
+ * smaller than, equal to and larger than a row, over several passes.
+ */
+class BinaryDataSourceTest {
+    private static final int INPUTS = 5;
+    private static final int OUTPUTS = 3;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Rows of 64 bytes as FLOAT64 and 32 bytes as FLOAT32, so the windows split the file at and between rows.
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "FLOAT64, 1", "FLOAT64, 64", "FLOAT64, 100", "FLOAT64, 192", "FLOAT64, 1000", "FLOAT64, 67108864",
+            "FLOAT32, 1", "FLOAT32, 32", "FLOAT32, 50", "FLOAT32, 96", "FLOAT32, 1000", "FLOAT32, 67108864"
+    })
+    void roundTrip(DataType dataType, int windowBytes) throws IOException {
+        double[][] inputs = values(37, INPUTS, 1), expected = values(37, OUTPUTS, 2);
+        Path file = this.directory.resolve("samples.nnjd");
+        assertEquals(37, BinaryDataSource.write(new ArrayDataSource(inputs, expected), file, dataType));
+
+        try (BinaryDataSource source = new BinaryDataSource(file, windowBytes)) {
+            assertEquals(dataType, source.getDataType());
+            assertEquals(37, source.getRows());
+            assertEquals(INPUTS, source.getInputSize());
+            assertEquals(OUTPUTS, source.getOutputSize());
+            for (int pass = 0; pass < 2; pass++) {
+                source.rewind();
+                double[] input = new double[INPUTS], output = new double[OUTPUTS];
+                for (int row = 0; row < inputs.length; row++) {
+                    assertTrue(source.next(input, output));
+                    for (int i = 0; i < INPUTS; i++) assertEquals(stored(inputs[row][i], dataType), input[i]);
+                    for (int j = 0; j < OUTPUTS; j++) assertEquals(stored(expected[row][j], dataType), output[j]);
+                }
+                assertFalse(source.next(input, output));
+            }
+        }
+    }
+
+    @Test
+    void empty() throws IOException {
+        Path file = this.directory.resolve("empty.nnjd");
+        DataSource none = new DataSource() {
+            @Override
+            public int getInputSize() {
+                return INPUTS;
+            }
+
+            @Override
+            public int getOutputSize() {
+                return OUTPUTS;
+            }
+
+            @Override
+            public void rewind() {
+            }
+
+            @Override
+            public boolean next(double[] input, double[] expected) {
+                return false;
+            }
+        };
+        assertEquals(0, BinaryDataSource.write(none, file, DataType.FLOAT64));
+        try (BinaryDataSource source = new BinaryDataSource(file)) {
+            assertEquals(0, source.getRows());
+            assertFalse(source.next(new double[INPUTS], new double[OUTPUTS]));
+        }
+    }
+
+    @Test
+    void truncated() throws IOException {
+        Path file = this.directory.resolve("truncated.nnjd");
+        BinaryDataSource.write(new ArrayDataSource(values(4, INPUTS, 1), values(4, OUTPUTS, 2)), file,
+                DataType.FLOAT64);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertThrows(IOException.class, () -> new BinaryDataSource(file));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(BinaryDataSource.HEADER_BYTES - 1);
+        }
+        assertThrows(IOException.class, () -> new BinaryDataSource(file));
+    }
+
+    private static double stored(double value, DataType dataType) {
+        return dataType == DataType.FLOAT32 ? (float) value : value;
+    }
+
+    private static double[][] values(int rows, int columns, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[][] values = new double[rows][columns];
+        for (double[] row : values) for (int i = 0; i < columns; i++) row[i] = random.nextDouble(-10.0, 10.0);
+        return values;
+    }
+}
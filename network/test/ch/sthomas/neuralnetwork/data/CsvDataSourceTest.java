@@ -0,0 +1,144 @@
+package ch.sthomas.neuralnetwork.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the values {@link CsvDataSource} parses with {@link Double#parseDouble(String)}, on the fast path for
+ * short decimal numbers and on every form it leaves to the slow path, and checks how lines are split.
+ */
+class CsvDataSourceTest {
+    private static final String[] LITERALS = {
+            "0", "-0", "0.0", "-0.0", "+0", "000.000", "1", "-1", "+7", ".5", "5.", "-.25", "1e5", "1E+2", "2.5e-3",
+            "-6.02214076E23", "1e22", "1e23", "1e-22", "1e-23", "9007199254740993", "123456789012345678",
+            "1234567890123456789", "0.1", "0.3", "3.141592653589793", "2.2250738585072014E-308", "4.9e-324",
+            "1.7976931348623157e308", "1e400", "1e-400", "0.000000000000000000000000001", "1e0010", "NaN", "Infinity",
+            "-Infinity", "0x1.8p1", "1d", "2.5f"
+    };
+
+    @TempDir
+    Path directory;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Test
+    void literals() throws IOException {
+        assertParsed(List.of(LITERALS), "\n");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"%s", "%.6f", "%.17g", "%e", "%.3E"})
+    void randomValues(String format) throws IOException {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            double value = this.random.nextDouble(-1.0, 1.0) * Math.pow(10, this.random.nextInt(-30, 31));
+            values.add(format.equals("%s") ? Double.toString(value) : String.format(Locale.ROOT, format, value));
+        }
+        assertParsed(values, "\n");
+    }
+
+    @Test
+    void randomIntegers() throws IOException {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) values.add(Long.toString(this.random.nextLong() >> this.random.nextInt(64)));
+        assertParsed(values, "\n");
+    }
+
+    @Test
+    void crlfAndWhitespace() throws IOException {
+        assertParsed(List.of(LITERALS), "\r\n");
+        Path file = this.write(" 1 ,\t2.5,-3 , 4\r\n\r\n   \n5,6,7,8  \r\n");
+        try (CsvDataSource source = new CsvDataSource(file, 3, 1, false)) {
+            assertSamples(source, new double[][]{{1, 2.5, -3, 4}, {5, 6, 7, 8}});
+        }
+    }
+
+    @Test
+    void noTrailingNewline() throws IOException {
+        Path file = this.write("1,2,3,4\n5,6,7,8");
+        try (CsvDataSource source = new CsvDataSource(file, 3, 1, false)) {
+            assertSamples(source, new double[][]{{1, 2, 3, 4}, {5, 6, 7, 8}});
+        }
+    }
+
+    @Test
+    void header() throws IOException {
+        Path file = this.write("a,b,c,label\n1,2,3,4\n5,6,7,8\n");
+        try (CsvDataSource source = new CsvDataSource(file, 3, 1, true)) {
+            // The first pass must skip the header without a rewind, like every following pass
+            assertSamples(source, new double[][]{{1, 2, 3, 4}, {5, 6, 7, 8}});
+            source.rewind();
+            assertSamples(source, new double[][]{{1, 2, 3, 4}, {5, 6, 7, 8}});
+        }
+    }
+
+    @Test
+    void errorLines() throws IOException {
+        assertError("1,2,3,4\n1,2,3\n", false, "line 2 has fewer than 4 values");
+        assertError("1,2,3,4\n\n1,2,3,4,5\n", false, "line 3 has more than 4 values");
+        assertError("x,y,z,w\n1,2,3,4\n1,2,abc,4\n", true, "line 3 has the value \"abc\" that is not a number");
+        assertError("1,,3,4\n", false, "line 1 has an empty value");
+        assertError("1,2,3,1e\n", false, "not a number");
+        assertError("1,2,3,1.2.3\n", false, "not a number");
+        assertError("1,2,3,-\n", false, "not a number");
+    }
+
+    /**
+     * Write the values as lines of three inputs and one output and compare the parsed values bit by bit.
+     */
+    private void assertParsed(List<String> values, String newline) throws IOException {
+        List<String> padded = new ArrayList<>(values);
+        while (padded.size() % 4 != 0) padded.add("0");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < padded.size(); i += 4) {
+            text.append(String.join(",", padded.subList(i, i + 4))).append(newline);
+        }
+        double[][] expected = new double[padded.size() / 4][4];
+        for (int i = 0; i < padded.size(); i++) expected[i / 4][i % 4] = Double.parseDouble(padded.get(i));
+
+        try (CsvDataSource source = new CsvDataSource(this.write(text.toString()), 3, 1, false)) {
+            assertSamples(source, expected);
+        }
+    }
+
+    private static void assertSamples(CsvDataSource source, double[][] expected) throws IOException {
+        double[] input = new double[3], output = new double[1];
+        for (double[] sample : expected) {
+            assertTrue(source.next(input, output));
+            for (int i = 0; i < 3; i++) assertEquals(sample[i], input[i]);
+            assertEquals(sample[3], output[0]);
+        }
+        assertFalse(source.next(input, output));
+    }
+
+    private void assertError(String text, boolean header, String message) throws IOException {
+        try (CsvDataSource source = new CsvDataSource(this.write(text), 3, 1, header)) {
+            double[] input = new double[3], output = new double[1];
+            IOException e = assertThrows(IOException.class, () -> {
+                while (source.next(input, output)) ;
+            });
+            assertTrue(e.getMessage().contains(message), e.getMessage());
+        }
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = Files.createTempFile(this.directory, "samples", ".csv");
+        Files.writeString(file, text, StandardCharsets.US_ASCII);
+        return file;
+    }
+}
@@ -0,0 +1,107 @@
+package ch.sthomas.neuralnetwork.data;
+
+import ch.sthomas.neuralnetwork.training.ArrayDataSource;
+import ch.sthomas.neuralnetwork.training.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link PrefetchingDataSource} hands over exactly the samples of the underlying source in their order,
+ * for passes that end inside, at the end of and before the first block, and that a failure of the source ends the pass.
+ */
+@Timeout(10)
+class PrefetchingDataSourceTest {
+    private static final int SAMPLES = 23;
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "4, 1", "4, 3", "5, 2", "23, 1", "30, 2"})
+    void samplesInOrder(int blockSize, int blocks) throws IOException {
+        try (PrefetchingDataSource source = new PrefetchingDataSource(numbered(), blockSize, blocks)) {
+            for (int pass = 0; pass < 2; pass++) {
+                source.rewind();
+                assertPass(source);
+            }
+        }
+    }
+
+    @Test
+    void rewindWithinPass() throws IOException {
+        try (PrefetchingDataSource source = new PrefetchingDataSource(numbered(), 4, 2)) {
+            source.rewind();
+            double[] input = new double[1], expected = new double[1];
+            for (int i = 0; i < 6; i++) assertTrue(source.next(input, expected));
+            source.rewind();
+            assertPass(source);
+        }
+    }
+
+    @Test
+    void failureEndsPass() throws IOException {
+        DataSource failing = new DataSource() {
+            private int position;
+
+            @Override
+            public int getInputSize() {
+                return 1;
+            }
+
+            @Override
+            public int getOutputSize() {
+                return 1;
+            }
+
+            @Override
+            public void rewind() {
+                this.position = 0;
+            }
+
+            @Override
+            public boolean next(double[] input, double[] expected) {
+                if (this.position == 6) throw new IllegalStateException("Row 6 is broken.");
+                input[0] = expected[0] = this.position++;
+                return true;
+            }
+        };
+        try (PrefetchingDataSource source = new PrefetchingDataSource(failing, 4, 2)) {
+            source.rewind();
+            double[] input = new double[1], expected = new double[1];
+            for (int i = 0; i < 4; i++) {
+                assertTrue(source.next(input, expected));
+                assertEquals(i, input[0]);
+            }
+            IOException e = assertThrows(IOException.class, () -> source.next(input, expected));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertFalse(source.next(input, expected));
+        }
+    }
+
+    private static void assertPass(DataSource source) throws IOException {
+        double[] input = new double[1], expected = new double[1];
+        for (int i = 0; i < SAMPLES; i++) {
+            assertTrue(source.next(input, expected));
+            assertEquals(i, input[0]);
+            assertEquals(-i, expected[0]);
+        }
+        assertFalse(source.next(input, expected));
+        assertFalse(source.next(input, expected));
+    }
+
+    private static DataSource numbered() {
+        double[][] inputs = new double[SAMPLES][1], expected = new double[SAMPLES][1];
+        for (int i = 0; i < SAMPLES; i++) {
+            inputs[i][0] = i;
+            expected[i][0] = -i;
+        }
+        return new ArrayDataSource(inputs, expected);
+    }
+}
@@ -0,0 +1,110 @@
+package ch.sthomas.neuralnetwork.io;
+
+import ch.sthomas.neuralnetwork.ActivationType;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.MathUtils;
+import ch.sthomas.neuralnetwork.Network;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes networks with {@link ModelFile}, maps and reads them back and checks that they calculate the same outputs, and
+ * that corrupted files are rejected with an {@link IOException} instead of overflowing or allocating.
+ */
+class ModelFileTest {
+    private static final double TOLERANCE = 1e-12;
+    private static final double FLOAT_TOLERANCE = 1e-5;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(DataType.class)
+    void roundTrip(DataType dataType) throws IOException {
+        Network network = network();
+        Path file = this.directory.resolve("model.nnjm");
+        ModelFile.write(network, file, dataType);
+
+        MappedModel model = ModelFile.map(file);
+        assertEquals(dataType, model.getDataType());
+        assertEquals(network.getLayers().length, model.getLayers());
+        Network read = ModelFile.read(file);
+        for (int l = 0; l < model.getLayers(); l++) {
+            Layer layer = network.getLayers()[l];
+            assertEquals(layer.getInputs(), model.getInputs(l));
+            assertEquals(layer.getOutputs(), model.getOutputs(l));
+            assertEquals(layer.getActivation(), model.getActivation(l));
+            assertArrayEquals(stored(layer.getWeights(), dataType), read.getLayers()[l].getWeights());
+            assertArrayEquals(stored(layer.getBiases(), dataType), read.getLayers()[l].getBiases());
+        }
+
+        double tolerance = dataType == DataType.FLOAT32 ? FLOAT_TOLERANCE : TOLERANCE;
+        for (double[] inputs : MathUtils.getRandomDoubleArrays(20, network.getNrOfInputs())) {
+            double[] expected = network.calculateOutputs(inputs);
+            assertClose(expected, model.calculateOutputs(inputs), tolerance);
+            assertClose(expected, read.calculateOutputs(inputs), tolerance);
+        }
+    }
+
+    /**
+     * Overwrite one int of the header, the layer count at 12 and the first layer's inputs at 16.
+     */
+    @ParameterizedTest
+    @CsvSource({"0, 0", "4, 2", "8, 9", "12, 0", "12, -1", "12, 2147483647", "12, 178956971", "12, 1000", "16, -3",
+            "16, 2147483647", "20, 2147483647", "24, 99"})
+    void corruptedHeader(int offset, int value) throws IOException {
+        Path file = this.directory.resolve("corrupted.nnjm");
+        ModelFile.write(network(), file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value), offset);
+        }
+        assertThrows(IOException.class, () -> ModelFile.map(file));
+    }
+
+    @Test
+    void truncated() throws IOException {
+        Path file = this.directory.resolve("truncated.nnjm");
+        ModelFile.write(network(), file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            for (long length : new long[]{size - 1, 40, 17, 3, 0}) {
+                channel.truncate(length);
+                IOException e = assertThrows(IOException.class, () -> ModelFile.map(file));
+                assertTrue(e.getMessage().contains("truncated") || e.getMessage().contains("corrupted"),
+                        e.getMessage());
+            }
+        }
+    }
+
+    private static Network network() {
+        return new Network(new Layer(7, 6, ActivationType.TANH), new Layer(6, 5, ActivationType.RELU),
+                new Layer(5, 4, ActivationType.SOFTMAX));
+    }
+
+    private static double[] stored(double[] values, DataType dataType) {
+        if (dataType == DataType.FLOAT64) return values;
+        double[] stored = new double[values.length];
+        for (int i = 0; i < values.length; i++) stored[i] = (float) values[i];
+        return stored;
+    }
+
+    private static void assertClose(double[] expected, double[] actual, double tolerance) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], actual[i], tolerance);
+    }
+}
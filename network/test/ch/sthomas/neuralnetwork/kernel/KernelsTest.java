@@ -0,0 +1,122 @@
+package ch.sthomas.neuralnetwork.kernel;
+
+import ch.sthomas.neuralnetwork.MathUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the selected kernels with {@link ScalarKernels}, on every length up to a few vector widths so the main
+ * loops, the unrolled loops and the scalar tails are all covered.
+ */
+class KernelsTest {
+    /**
+     * The tolerance of results that only add in another order, relative to their magnitude
+     */
+    private static final double TOLERANCE = 1e-12;
+    private static final double FLOAT_TOLERANCE = 1e-5;
+
+    private final Kernels reference = new ScalarKernels();
+    private final Kernels kernels = Kernels.get();
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    static IntStream lengths() {
+        return IntStream.rangeClosed(0, 70);
+    }
+
+    @Test
+    void selectsVectorKernels() {
+        boolean available = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        boolean scalar = System.getProperty(Kernels.PROPERTY, "").equals("scalar");
+        if (available && !scalar) assertTrue(this.kernels instanceof VectorKernels, this.kernels.getName());
+    }
+
+    @ParameterizedTest
+    @MethodSource("lengths")
+    void dot(int length) {
+        double[] x = this.values(length + 3), y = this.values(length + 5);
+        assertClose(this.reference.dot(x, 3, y, 5, length), this.kernels.dot(x, 3, y, 5, length), TOLERANCE);
+        assertClose(this.reference.dot(x, 0, y, 0, length),
+                MathUtils.dotP(Arrays.copyOf(x, length), Arrays.copyOf(y, length)), TOLERANCE);
+    }
+
+    @ParameterizedTest
+    @MethodSource("lengths")
+    void axpy(int length) {
+        double[] x = this.values(length + 2), y = this.values(length + 1);
+        double[] expected = y.clone(), actual = y.clone();
+        this.reference.axpy(0.7, x, 2, expected, 1, length);
+        this.kernels.axpy(0.7, x, 2, actual, 1, length);
+        assertClose(expected, actual, TOLERANCE);
+    }
+
+    @ParameterizedTest
+    @MethodSource("lengths")
+    void gemv(int columns) {
+        int rows = 7;
+        double[] a = this.values(rows * columns), x = this.values(columns), bias = this.values(rows);
+        double[] expected = new double[rows], actual = new double[rows];
+        this.reference.gemv(a, rows, columns, x, bias, expected);
+        this.kernels.gemv(a, rows, columns, x, bias, actual);
+        assertClose(expected, actual, TOLERANCE);
+
+        this.reference.gemv(a, rows, columns, x, null, expected);
+        this.kernels.gemv(a, rows, columns, x, null, actual);
+        assertClose(expected, actual, TOLERANCE);
+    }
+
+    @ParameterizedTest
+    @MethodSource("lengths")
+    void gemvFloat(int columns) {
+        int rows = 7;
+        float[] a = toFloats(this.values(rows * columns)), x = toFloats(this.values(columns));
+        float[] bias = toFloats(this.values(rows));
+        float[] expected = new float[rows], actual = new float[rows];
+        this.reference.gemv(a, rows, columns, x, bias, expected);
+        this.kernels.gemv(a, rows, columns, x, bias, actual);
+        for (int j = 0; j < rows; j++) assertClose(expected[j], actual[j], FLOAT_TOLERANCE);
+    }
+
+    /**
+     * Odd numbers of rows of A, numbers of rows of B that are not a multiple of the 2x4 tiles and a depth large enough
+     * to split B into several blocks.
+     */
+    @ParameterizedTest
+    @CsvSource({"1, 1, 1", "2, 4, 8", "3, 5, 7", "5, 9, 13", "8, 12, 31", "11, 37, 53", "4, 21, 2048", "7, 6, 4099"})
+    void gemm(int m, int n, int k) {
+        double[] a = this.values(m * k), b = this.values(n * k);
+        double[] expected = new double[m * n], actual = new double[m * n];
+        this.reference.gemm(a, b, expected, m, n, k);
+        this.kernels.gemm(a, b, actual, m, n, k);
+        assertClose(expected, actual, TOLERANCE);
+    }
+
+    private double[] values(int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) values[i] = this.random.nextDouble(-1.0, 1.0);
+        return values;
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) floats[i] = (float) values[i];
+        return floats;
+    }
+
+    private static void assertClose(double[] expected, double[] actual, double tolerance) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) assertClose(expected[i], actual[i], tolerance);
+    }
+
+    private static void assertClose(double expected, double actual, double tolerance) {
+        assertEquals(expected, actual, tolerance * Math.max(1.0, Math.abs(expected)));
+    }
+}
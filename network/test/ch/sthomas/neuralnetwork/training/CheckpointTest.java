@@ -0,0 +1,153 @@
+package ch.sthomas.neuralnetwork.training;
+
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.MathUtils;
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.io.ModelFile;
+import ch.sthomas.neuralnetwork.optimizer.Adam;
+import ch.sthomas.neuralnetwork.optimizer.Momentum;
+import ch.sthomas.neuralnetwork.optimizer.Optimizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Saves checkpoints of a training run with a {@link Checkpointer}, resumes a new trainer from them and checks that the
+ * weights and the optimizer state come back unchanged, so the resumed run continues exactly like the original one.
+ */
+class CheckpointTest {
+    @TempDir
+    Path directory;
+
+    private final double[][] inputs = MathUtils.getRandomDoubleArrays(40, 6);
+    private final double[][] expected = MathUtils.getRandomDoubleArrays(40, 3);
+
+    @Test
+    void resume() throws IOException, InterruptedException {
+        Trainer trainer = this.trainer(new Adam());
+        try (Checkpointer checkpointer = new Checkpointer(this.directory, 2)) {
+            for (int epoch = 1; epoch <= 3; epoch++) {
+                trainer.train(this.source(), 1);
+                checkpointer.checkpoint(trainer, epoch);
+                checkpointer.flush();
+            }
+        }
+        assertEquals(2, Checkpoint.list(this.directory).size());
+
+        Checkpoint checkpoint = Checkpoint.read(Checkpoint.latest(this.directory));
+        assertEquals(3, checkpoint.getEpoch());
+        assertEquals(trainer.getOptimizer().getSteps(), checkpoint.getSteps());
+        assertEquals(Adam.class.getName(), checkpoint.getOptimizer());
+        assertSameWeights(trainer.getNetwork(), checkpoint.getNetwork());
+        // A checkpoint is also a plain model file
+        assertSameWeights(trainer.getNetwork(), ModelFile.read(checkpoint.getPath()));
+
+        Trainer resumed = this.trainer(new Adam());
+        checkpoint.restore(resumed);
+        assertSameWeights(trainer.getNetwork(), resumed.getNetwork());
+        Optimizer original = trainer.getOptimizer(), restored = resumed.getOptimizer();
+        assertEquals(original.getSteps(), restored.getSteps());
+        assertEquals(original.getState().length, restored.getState().length);
+        for (int i = 0; i < original.getState().length; i++) {
+            assertArrayEquals(original.getState()[i], restored.getState()[i]);
+        }
+
+        trainer.train(this.source(), 2);
+        resumed.train(this.source(), 2);
+        assertSameWeights(trainer.getNetwork(), resumed.getNetwork());
+    }
+
+    @Test
+    void resumeBeforeFirstStep() throws IOException, InterruptedException {
+        Trainer trainer = this.trainer(new Momentum());
+        try (Checkpointer checkpointer = new Checkpointer(this.directory, 1)) {
+            checkpointer.checkpoint(trainer, 0);
+            checkpointer.flush();
+        }
+        Checkpoint checkpoint = Checkpoint.read(Checkpoint.latest(this.directory));
+        assertEquals(0, checkpoint.getSteps());
+
+        Trainer resumed = this.trainer(new Momentum());
+        // The state of the steps taken since must be dropped
+        resumed.train(this.source(), 1);
+        checkpoint.restore(resumed);
+        assertSameWeights(trainer.getNetwork(), resumed.getNetwork());
+        assertEquals(0, resumed.getOptimizer().getSteps());
+        assertEquals(0, resumed.getOptimizer().getState().length);
+    }
+
+    @Test
+    void otherOptimizer() throws IOException, InterruptedException {
+        Trainer trainer = this.trainer(new Adam());
+        trainer.train(this.source(), 1);
+        try (Checkpointer checkpointer = new Checkpointer(this.directory, 1)) {
+            checkpointer.checkpoint(trainer, 1);
+            checkpointer.flush();
+        }
+        Checkpoint checkpoint = Checkpoint.read(Checkpoint.latest(this.directory));
+        assertThrows(IllegalArgumentException.class, () -> checkpoint.restore(this.trainer(new Momentum())));
+    }
+
+    @Test
+    void continuesNumbering() throws IOException, InterruptedException {
+        assertNull(Checkpoint.latest(this.directory));
+        Trainer trainer = this.trainer(new Adam());
+        for (int run = 0; run < 2; run++) {
+            try (Checkpointer checkpointer = new Checkpointer(this.directory, 3)) {
+                checkpointer.checkpoint(trainer, run);
+                checkpointer.flush();
+            }
+        }
+        assertEquals(Checkpoint.name(1), Checkpoint.latest(this.directory).getFileName().toString());
+    }
+
+    @Test
+    void bestCheckpoint() throws IOException, InterruptedException {
+        Trainer trainer = this.trainer(new Adam());
+        EarlyStopping stopping = new EarlyStopping();
+        stopping.setMaxEpochs(8);
+        stopping.setValidation(new ArrayDataSource(MathUtils.getRandomDoubleArrays(10, 6),
+                MathUtils.getRandomDoubleArrays(10, 3)));
+        TrainingResult result;
+        try (Checkpointer checkpointer = new Checkpointer(this.directory, 1)) {
+            stopping.setCheckpointer(checkpointer);
+            result = stopping.train(trainer, this.source());
+            checkpointer.flush();
+        }
+        // Only the best checkpoint is kept besides the newest one
+        assertEquals(1, Checkpoint.list(this.directory).size());
+
+        // The trainer holds the restored best weights, which must match the best checkpoint
+        Checkpoint best = Checkpoint.read(Checkpoint.best(this.directory));
+        assertEquals(result.bestEpoch() + 1, best.getEpoch());
+        assertSameWeights(trainer.getNetwork(), best.getNetwork());
+    }
+
+    private Trainer trainer(Optimizer optimizer) {
+        Trainer trainer = new Trainer(new Network(6, 5, new int[]{4}, 3));
+        trainer.setOptimizer(optimizer);
+        trainer.setBatchSize(8);
+        trainer.setParallelism(1);
+        return trainer;
+    }
+
+    private DataSource source() {
+        return new ArrayDataSource(this.inputs, this.expected);
+    }
+
+    private static void assertSameWeights(Network expected, Network actual) {
+        Layer[] expectedLayers = expected.getLayers(), actualLayers = actual.getLayers();
+        assertEquals(expectedLayers.length, actualLayers.length);
+        for (int l = 0; l < expectedLayers.length; l++) {
+            assertArrayEquals(expectedLayers[l].getWeights(), actualLayers[l].getWeights());
+            assertArrayEquals(expectedLayers[l].getBiases(), actualLayers[l].getBiases());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ch.sthomas.neuralnetwork.verification;
+
+/**
+ * The result of one numeric comparison of {@link NumericVerifier}.
+ *
+ * @param name      what was compared
+ * @param error     the largest deviation found, relative to the magnitude of the reference values where they exceed 1
+ * @param tolerance the largest deviation that passes
+ */
+record Check(String name, double error, double tolerance) {
+    /**
+     * @return true if the error is at most the tolerance, false if it is larger or not a number
+     */
+    boolean passed() {
+        return this.error <= this.tolerance;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %-40s %.3e (tolerance %.1e)", this.passed() ? "PASS" : "FAIL", this.name, this.error,
+                this.tolerance);
+    }
+}
@@ -0,0 +1,427 @@
+package ch.sthomas.neuralnetwork.verification;
+
+import ch.sthomas.neuralnetwork.Activation;
+import ch.sthomas.neuralnetwork.ActivationType;
+import ch.sthomas.neuralnetwork.Backpropagation;
+import ch.sthomas.neuralnetwork.Gradients;
+import ch.sthomas.neuralnetwork.Layer;
+import ch.sthomas.neuralnetwork.Network;
+import ch.sthomas.neuralnetwork.Neuron;
+import ch.sthomas.neuralnetwork.SparseVector;
+import ch.sthomas.neuralnetwork.inference.CompilationReport;
+import ch.sthomas.neuralnetwork.inference.ExecutionPlan;
+import ch.sthomas.neuralnetwork.inference.FloatNetwork;
+import ch.sthomas.neuralnetwork.inference.InferenceCompiler;
+import ch.sthomas.neuralnetwork.inference.InferenceSnapshot;
+import ch.sthomas.neuralnetwork.inference.QuantizedNetwork;
+import ch.sthomas.neuralnetwork.inference.SnapshotHolder;
+import ch.sthomas.neuralnetwork.training.ArrayDataSource;
+import ch.sthomas.neuralnetwork.training.DataSource;
+import ch.sthomas.neuralnetwork.training.SparseDataSource;
+import ch.sthomas.neuralnetwork.training.Trainer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the analytic gradients of small random networks with central finite differences, and every optimized code
+ * path with a plain reference implementation: the flat, batched, sparse, snapshot, compiled, float and quantized
+ * forward passes as well as parallel and sparse training with loops written out without any kernel.
+ * {@link NumericVerifierTest} runs every check as a test, the kernels themselves are compared in {@code KernelsTest}.
+ */
+class NumericVerifier {
+    /**
+     * The step of the central differences, small enough for the truncation error and large enough for the rounding
+     * error to stay far below {@link #GRADIENT_TOLERANCE}.
+     */
+    private static final double STEP = 1e-6;
+    private static final double GRADIENT_TOLERANCE = 1e-6;
+    /**
+     * The tolerance of code paths that only add in another order
+     */
+    private static final double EXACT_TOLERANCE = 1e-12;
+    private static final double FLOAT_TOLERANCE = 1e-5;
+    private static final double QUANTIZED_TOLERANCE = 2e-2;
+
+    private final long seed;
+
+    /**
+     * @param seed the seed of the random networks and samples
+     */
+    NumericVerifier(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Run all checks.
+     *
+     * @return the result of every check
+     */
+    List<Check> run() {
+        List<Check> checks = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(this.seed);
+        checkActivations(checks, random);
+        checkSigmoidDerivative(checks, random);
+        checkGradients(checks, random);
+        checkInference(checks, random);
+        checkCompiler(checks, random);
+        checkTraining(checks, random);
+        return checks;
+    }
+
+    /**
+     * Compare dC/dz of every activation function with finite differences of its forward pass.
+     */
+    private static void checkActivations(List<Check> checks, SplittableRandom random) {
+        int length = 7;
+        for (ActivationType type : ActivationType.values()) {
+            double[] z = values(random, length, 3.0);
+            double[] gradient = values(random, length, 1.0);
+            double[] a = new double[length], delta = new double[length];
+            type.forward(z, a, 0, length);
+            type.backward(z, a, gradient, delta, 0, length);
+
+            // The approximations are differentiated as the functions they approximate
+            ActivationType exact = type == ActivationType.FAST_SIGMOID ? ActivationType.SIGMOID
+                    : type == ActivationType.FAST_TANH ? ActivationType.TANH : type;
+            double[] numeric = new double[length], plus = new double[length], minus = new double[length];
+            for (int i = 0; i < length; i++) {
+                double value = z[i];
+                z[i] = value + STEP;
+                exact.forward(z, plus, 0, length);
+                z[i] = value - STEP;
+                exact.forward(z, minus, 0, length);
+                z[i] = value;
+                for (int j = 0; j < length; j++) numeric[i] += gradient[j] * (plus[j] - minus[j]) / (2 * STEP);
+            }
+            double tolerance = type == ActivationType.FAST_SIGMOID ? 1e-5
+                    : type == ActivationType.FAST_TANH ? 1e-3 : GRADIENT_TOLERANCE;
+            checks.add(new Check("activation derivative " + type, error(numeric, delta), tolerance));
+        }
+    }
+
+    private static void checkSigmoidDerivative(List<Check> checks, SplittableRandom random) {
+        Network network = new Network(6, 5, new int[]{4}, 3);
+        network.initInputs(random.nextLong());
+        double[] input = values(random, 6, 1.0);
+        double error = 0.0;
+        for (int j = 0; j < network.getLayers()[0].getOutputs(); j++) {
+            Neuron neuron = network.getNeuron(0, j);
+            double z = neuron.z(input);
+            double plus = ActivationType.SIGMOID.activate(z + STEP), minus = ActivationType.SIGMOID.activate(z - STEP);
+            double numeric = (plus - minus) / (2 * STEP);
+            error = Math.max(error, Math.abs(Neuron.sigmoidDerivative(neuron, input) - numeric));
+        }
+        checks.add(new Check("Neuron.sigmoidDerivative", error, GRADIENT_TOLERANCE));
+    }
+
+    /**
+     * Compare the gradients of backpropagation with finite differences of the cost, for every weight and bias.
+     */
+    private static void checkGradients(List<Check> checks, SplittableRandom random) {
+        Activation[][] configurations = {
+                {ActivationType.SIGMOID, ActivationType.SIGMOID},
+                {ActivationType.TANH, ActivationType.LINEAR},
+                {ActivationType.RELU, ActivationType.SIGMOID},
+                {ActivationType.LEAKY_RELU, ActivationType.SOFTMAX},
+        };
+        for (Activation[] activations : configurations) {
+            Network network = new Network(5, 6, new int[]{4}, 3, activations[0], activations[1]);
+            network.initInputs(random.nextLong());
+            double[][] inputs = matrix(random, 4, 5), expected = matrix(random, 4, 3);
+            Backpropagation backpropagation = new Backpropagation(network);
+            for (int s = 0; s < inputs.length; s++) backpropagation.accumulate(inputs[s], expected[s]);
+
+            Gradients gradients = backpropagation.getGradients();
+            Layer[] layers = network.getLayers();
+            double error = 0.0;
+            for (int l = 0; l < layers.length; l++) {
+                Layer layer = layers[l];
+                double weights = gradientError(network, layer.getWeights(), gradients.getWeights(l), inputs, expected);
+                double biases = gradientError(network, layer.getBiases(), gradients.getBiases(l), inputs, expected);
+                error = Math.max(error, Math.max(weights, biases));
+            }
+            checks.add(new Check("gradient " + activations[0] + "/" + activations[1], error, GRADIENT_TOLERANCE));
+        }
+
+        Network network = new Network(40, 8, new int[]{6}, 3);
+        network.initInputs(random.nextLong());
+        double[][] inputs = sparse(random, matrix(random, 8, 40)), expected = matrix(random, 8, 3);
+        Backpropagation dense = new Backpropagation(network), sparse = new Backpropagation(network);
+        for (int s = 0; s < inputs.length; s++) {
+            dense.accumulate(inputs[s], expected[s]);
+            sparse.accumulate(SparseVector.of(inputs[s]), expected[s]);
+        }
+        checks.add(new Check("sparse gradient", error(flatten(dense.getGradients()), flatten(sparse.getGradients())),
+                EXACT_TOLERANCE));
+    }
+
+    /**
+     * @param parameters the live weights or biases of a layer, changed and restored one at a time
+     * @param analytic   the gradients of the parameters calculated by backpropagation
+     */
+    private static double gradientError(Network network, double[] parameters, double[] analytic, double[][] inputs,
+                                        double[][] expected) {
+        double[] numeric = new double[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            double value = parameters[i];
+            parameters[i] = value + STEP;
+            double plus = cost(network, inputs, expected);
+            parameters[i] = value - STEP;
+            double minus = cost(network, inputs, expected);
+            parameters[i] = value;
+            numeric[i] = (plus - minus) / (2 * STEP);
+        }
+        return error(numeric, analytic);
+    }
+
+    private static double cost(Network network, double[][] inputs, double[][] expected) {
+        double cost = 0.0;
+        for (int s = 0; s < inputs.length; s++) {
+            cost += network.getCostValue(network.calculateOutputs(inputs[s]), expected[s]);
+        }
+        return cost;
+    }
+
+    /**
+     * Compare every forward pass with the reference implementation.
+     */
+    private static void checkInference(List<Check> checks, SplittableRandom random) {
+        Network network = new Network(24, 32, new int[]{16}, 8);
+        network.initInputs(random.nextLong());
+        double[][] inputs = matrix(random, 64, 24);
+        double[][] expected = reference(network, inputs);
+        int outputs = expected[0].length;
+
+        checks.add(new Check("network", error(expected, outputs(network::calculateOutputs, inputs, outputs)),
+                EXACT_TOLERANCE));
+        checks.add(new Check("batched network", error(expected, network.calculateOutputs(inputs)), EXACT_TOLERANCE));
+        InferenceSnapshot snapshot = InferenceSnapshot.of(network);
+        checks.add(new Check("inference snapshot", error(expected,
+                outputs(snapshot::calculateOutputs, inputs, outputs)), EXACT_TOLERANCE));
+        SnapshotHolder holder = new SnapshotHolder(InferenceSnapshot.of(new Network(24, 4, new int[0], 8)));
+        holder.calculateOutputs(inputs[0]);
+        holder.swap(snapshot);
+        checks.add(new Check("snapshot holder", error(expected, outputs(holder::calculateOutputs, inputs, outputs)),
+                EXACT_TOLERANCE));
+
+        InferenceCompiler compiler = new InferenceCompiler();
+        Forward compiled = compiler.compile(network)::calculateOutputs;
+        checks.add(new Check("execution plan", error(expected, outputs(compiled, inputs, outputs)), EXACT_TOLERANCE));
+        compiler.setSparseDensity(1.0);
+        Forward csr = compiler.compile(network)::calculateOutputs;
+        checks.add(new Check("execution plan, sparse weights", error(expected, outputs(csr, inputs, outputs)),
+                EXACT_TOLERANCE));
+
+        FloatNetwork floats = new FloatNetwork(network);
+        checks.add(new Check("float network", error(expected, outputs(floats::calculateOutputs, inputs, outputs)),
+                FLOAT_TOLERANCE));
+        QuantizedNetwork quantized = QuantizedNetwork.calibrate(network, inputs);
+        checks.add(new Check("quantized network", error(expected,
+                outputs(quantized::calculateOutputs, inputs, outputs)), QUANTIZED_TOLERANCE));
+        // A layer whose sums of int8 products exceed the range of an int
+        double[] ones = new double[140_000];
+        Arrays.fill(ones, 1.0);
+        Network wide = new Network(new Layer(ones.length, 1, ones.clone(), new double[1], ActivationType.LINEAR));
+        double[][] wideInputs = {ones};
+        QuantizedNetwork quantizedWide = QuantizedNetwork.calibrate(wide, wideInputs);
+        checks.add(new Check("quantized network, wide layer", error(reference(wide, wideInputs),
+                outputs(quantizedWide::calculateOutputs, wideInputs, 1)), QUANTIZED_TOLERANCE));
+
+        double[][] sparseInputs = sparse(random, inputs);
+        Forward sparse = (in, out) -> network.calculateOutputs(SparseVector.of(in), out);
+        checks.add(new Check("sparse inputs", error(reference(network, sparseInputs),
+                outputs(sparse, sparseInputs, outputs)), EXACT_TOLERANCE));
+    }
+
+    /**
+     * Compare execution plans with the reference implementation on networks the compiler actually changes: a layer of
+     * only constant Neurons, and Neurons, inputs and a linear layer that are removed.
+     */
+    private static void checkCompiler(List<Check> checks, SplittableRandom random) {
+        Network constant = new Network(
+                new Layer(2, 3, new double[6], new double[]{0.5, -1, 2}, ActivationType.SIGMOID),
+                new Layer(3, 1, new double[]{1, 2, 3}, new double[]{0.1}, ActivationType.LINEAR));
+        double[][] inputs = matrix(random, 8, 2);
+        Forward plan = new InferenceCompiler().compile(constant)::calculateOutputs;
+        checks.add(new Check("execution plan, constant layer", error(reference(constant, inputs),
+                outputs(plan, inputs, 1)), EXACT_TOLERANCE));
+
+        Network network = new Network(
+                new Layer(8, 6, values(random, 48, 1.0), values(random, 6, 1.0), ActivationType.TANH),
+                new Layer(6, 5, values(random, 30, 1.0), values(random, 5, 1.0), ActivationType.LINEAR),
+                new Layer(5, 3, values(random, 15, 1.0), values(random, 3, 1.0), ActivationType.SIGMOID));
+        Layer[] layers = network.getLayers();
+        // A constant Neuron, an input nothing reads and a Neuron nothing reads
+        for (int i = 0; i < 8; i++) layers[0].getWeights()[2 * 8 + i] = 0.0;
+        for (int j = 0; j < 6; j++) layers[0].getWeights()[j * 8 + 1] = 0.0;
+        for (int j = 0; j < 5; j++) layers[1].getWeights()[j * 6 + 4] = 0.0;
+        inputs = matrix(random, 32, 8);
+        double[][] expected = reference(network, inputs);
+        InferenceCompiler compiler = new InferenceCompiler();
+        ExecutionPlan compiled = compiler.compile(network);
+        CompilationReport report = compiled.getReport();
+        boolean changed = report.constantNeurons() > 0 && report.prunedNeurons() > 0 && report.prunedInputs() > 0
+                && report.foldedLayers() > 0;
+        checks.add(new Check("execution plan, pruned and folded", changed
+                ? error(expected, outputs(compiled::calculateOutputs, inputs, 3)) : Double.NaN, EXACT_TOLERANCE));
+        compiler.setSparseDensity(1.0);
+        Forward csr = compiler.compile(network)::calculateOutputs;
+        checks.add(new Check("execution plan, pruned, sparse weights", error(expected, outputs(csr, inputs, 3)),
+                EXACT_TOLERANCE));
+    }
+
+    /**
+     * Compare parallel and sparse training with training on the calling thread.
+     */
+    private static void checkTraining(List<Check> checks, SplittableRandom random) {
+        double[][] inputs = matrix(random, 100, 12), expected = matrix(random, 100, 4);
+        long seed = random.nextLong();
+        double[] sequential = train(seed, new ArrayDataSource(inputs, expected), 1);
+        double[] parallel = train(seed, new ArrayDataSource(inputs, expected), 4);
+        checks.add(new Check("parallel training", error(sequential, parallel), EXACT_TOLERANCE));
+
+        double[][] sparseInputs = sparse(random, inputs);
+        double[] dense = train(seed, new ArrayDataSource(sparseInputs, expected), 1);
+        double[] sparse = train(seed, SparseDataSource.of(new ArrayDataSource(sparseInputs, expected)), 1);
+        checks.add(new Check("sparse training", error(dense, sparse), EXACT_TOLERANCE));
+    }
+
+    /**
+     * @param source a {@link DataSource} or {@link SparseDataSource}
+     * @return the weights and biases of a network trained for 3 epochs
+     */
+    private static double[] train(long seed, Object source, int parallelism) {
+        Network network = new Network(12, 10, new int[]{8}, 4);
+        network.initInputs(seed);
+        Trainer trainer = new Trainer(network);
+        trainer.setBatchSize(20);
+        trainer.setLearningRate(0.5);
+        trainer.setParallelism(parallelism);
+        try {
+            if (source instanceof SparseDataSource sparse) trainer.train(sparse, 3);
+            else trainer.train((DataSource) source, 3);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<double[]> parameters = new ArrayList<>();
+        for (Layer layer : network.getLayers()) {
+            parameters.add(layer.getWeights());
+            parameters.add(layer.getBiases());
+        }
+        return concat(parameters);
+    }
+
+    /**
+     * Calculate the outputs of a network with plain loops, independent of the kernels and workspaces.
+     */
+    private static double[][] reference(Network network, double[][] inputs) {
+        double[][] outputs = new double[inputs.length][];
+        for (int s = 0; s < inputs.length; s++) {
+            double[] x = inputs[s];
+            for (Layer layer : network.getLayers()) {
+                double[] weights = layer.getWeights(), biases = layer.getBiases();
+                double[] z = new double[layer.getOutputs()];
+                for (int j = 0; j < z.length; j++) {
+                    double sum = biases[j];
+                    for (int i = 0; i < layer.getInputs(); i++) sum += weights[j * layer.getInputs() + i] * x[i];
+                    z[j] = sum;
+                }
+                layer.getActivation().forward(z, z, 0, z.length);
+                x = z;
+            }
+            outputs[s] = x;
+        }
+        return outputs;
+    }
+
+    /**
+     * A forward pass writing into a buffer.
+     */
+    private interface Forward {
+        void calculate(double[] inputs, double[] outputs);
+    }
+
+    private static double[][] outputs(Forward forward, double[][] inputs, int outputs) {
+        double[][] result = new double[inputs.length][outputs];
+        for (int s = 0; s < inputs.length; s++) forward.calculate(inputs[s], result[s]);
+        return result;
+    }
+
+    /**
+     * @return the largest absolute difference, divided by the largest magnitude of the expected values if above 1
+     */
+    private static double error(double[] expected, double[] actual) {
+        if (expected.length != actual.length) return Double.NaN;
+        double error = 0.0, magnitude = 1.0;
+        for (int i = 0; i < expected.length; i++) {
+            double difference = Math.abs(expected[i] - actual[i]);
+            // Not a number never passes
+            error = difference > error || Double.isNaN(difference) ? difference : error;
+            magnitude = Math.max(magnitude, Math.abs(expected[i]));
+        }
+        return error / magnitude;
+    }
+
+    private static double error(double[][] expected, double[][] actual) {
+        double error = 0.0;
+        for (int s = 0; s < expected.length; s++) {
+            double difference = error(expected[s], actual[s]);
+            error = difference > error || Double.isNaN(difference) ? difference : error;
+        }
+        return error;
+    }
+
+    private static double[] flatten(Gradients gradients) {
+        List<double[]> parts = new ArrayList<>();
+        for (int l = 0; l < gradients.getLayers(); l++) {
+            parts.add(gradients.getWeights(l));
+            parts.add(gradients.getBiases(l));
+        }
+        return concat(parts);
+    }
+
+    private static double[] concat(List<double[]> parts) {
+        int length = 0;
+        for (double[] part : parts) length += part.length;
+        double[] result = new double[length];
+        int offset = 0;
+        for (double[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * @return uniformly distributed values in [-scale, scale)
+     */
+    private static double[] values(SplittableRandom random, int length, double scale) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) values[i] = random.nextDouble(-scale, scale);
+        return values;
+    }
+
+    private static double[][] matrix(SplittableRandom random, int rows, int columns) {
+        double[][] matrix = new double[rows][];
+        for (int i = 0; i < rows; i++) matrix[i] = values(random, columns, 1.0);
+        return matrix;
+    }
+
+    /**
+     * @return a copy with about 80% of the values set to 0
+     */
+    private static double[][] sparse(SplittableRandom random, double[][] matrix) {
+        double[][] sparse = new double[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            sparse[i] = matrix[i].clone();
+            for (int j = 0; j < sparse[i].length; j++) if (random.nextDouble() < 0.8) sparse[i][j] = 0.0;
+        }
+        return sparse;
+    }
+}
@@ -0,0 +1,23 @@
+package ch.sthomas.neuralnetwork.verification;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs every check of the {@link NumericVerifier} as a test. The system property {@value #SEED_PROPERTY} sets the
+ * seed of the random networks, for example {@code mvn test -Dch.sthomas.neuralnetwork.verification.seed=7}.
+ */
+class NumericVerifierTest {
+    static final String SEED_PROPERTY = "ch.sthomas.neuralnetwork.verification.seed";
+
+    @TestFactory
+    Stream<DynamicTest> checks() {
+        long seed = Long.getLong(SEED_PROPERTY, 42);
+        return new NumericVerifier(seed).run().stream()
+                .map(check -> DynamicTest.dynamicTest(check.name(), () -> assertTrue(check.passed(), check::toString)));
+    }
+}